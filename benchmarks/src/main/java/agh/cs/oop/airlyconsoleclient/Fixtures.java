@@ -0,0 +1,77 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * JSON responses used by the benchmarks.
+ */
+public class Fixtures {
+
+    /** Names of the checked-in fixtures and of generated ones ("synthetic-&lt;hours&gt;h") */
+    public static final String CURRENT_ONLY = "current-only";
+    public static final String HISTORY_24H = "history-24h";
+    public static final String HISTORY_720H = "history-720h";
+    public static final String SYNTHETIC_8760H = "synthetic-8760h";
+
+    public static String load(String name) {
+        if (name.startsWith("synthetic-")) {
+            int hours = Integer.parseInt(name.substring("synthetic-".length(), name.length() - 1));
+            return synthetic(hours, name.hashCode());
+        }
+
+        try (InputStream input = Fixtures.class.getResourceAsStream("/fixtures/" + name + ".json")) {
+            if (input == null) {
+                throw new IllegalArgumentException("No such fixture: " + name);
+            }
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates a response with the given number of hourly history entries.
+     */
+    public static String synthetic(int hours, long seed) {
+        Random random = new Random(seed);
+        Instant end = Instant.parse("2018-01-22T20:00:00Z");
+
+        StringBuilder json = new StringBuilder(hours * 300);
+        json.append("{\"currentMeasurements\":");
+        appendMeasurement(json, random);
+        json.append(",\"forecast\":[],\"history\":[");
+        for (int i = hours; i > 0; i--) {
+            Instant from = end.minus(i, ChronoUnit.HOURS);
+            if (i != hours) {
+                json.append(',');
+            }
+            json.append("{\"fromDateTime\":\"").append(from)
+                    .append("\",\"tillDateTime\":\"").append(from.plus(1, ChronoUnit.HOURS))
+                    .append("\",\"measurements\":");
+            appendMeasurement(json, random);
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendMeasurement(StringBuilder json, Random random) {
+        double pm25 = 3 + random.nextDouble() * 137;
+        double caqi = Math.min(pm25 * 1.25, 160);
+        json.append(String.format(Locale.ROOT,
+                "{\"airQualityIndex\":%.2f,\"pm1\":%.2f,\"pm25\":%.2f,\"pm10\":%.2f,\"pressure\":%.2f,"
+                        + "\"humidity\":%.2f,\"temperature\":%.2f,\"pollutionLevel\":%d}",
+                caqi, pm25 * 0.7, pm25, pm25 * 1.3,
+                101325 + random.nextDouble() * 1800 - 900,
+                30 + random.nextDouble() * 65,
+                -10 + random.nextDouble() * 35,
+                1 + Math.min(5, (int) (caqi / 25))));
+    }
+}
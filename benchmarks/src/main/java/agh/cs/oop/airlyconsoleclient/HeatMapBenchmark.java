@@ -0,0 +1,52 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interpolation of a heat map of a city (10 × 6 km) between sensors, on a grid of terminal pixels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeatMapBenchmark {
+
+    private static final double WIDTH_METERS = 10_000;
+    private static final double HEIGHT_METERS = 6_000;
+
+    @Param({"100", "500"})
+    public int sensors;
+
+    /** Width of the grid in pixels (terminal columns); its height keeps the aspect of the city */
+    @Param({"100", "300"})
+    public int columns;
+
+    private double[] xs;
+    private double[] ys;
+    private double[] values;
+    private int rows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        xs = new double[sensors];
+        ys = new double[sensors];
+        values = new double[sensors];
+        for (int i = 0; i < sensors; i++) {
+            xs[i] = random.nextDouble() * WIDTH_METERS;
+            ys[i] = random.nextDouble() * HEIGHT_METERS;
+            values[i] = random.nextDouble() * 150;
+        }
+        rows = (int) Math.round(columns * HEIGHT_METERS / WIDTH_METERS);
+    }
+
+    @Benchmark
+    public double[] interpolate() {
+        return HeatMap.interpolate(xs, ys, values, sensors, 0, 0, WIDTH_METERS / columns, columns, rows);
+    }
+}
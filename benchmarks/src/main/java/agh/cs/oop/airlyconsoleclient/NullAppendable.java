@@ -0,0 +1,32 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Output that discards everything, passing it to a {@link Blackhole} so that rendering is not optimized away.
+ */
+public class NullAppendable implements Appendable {
+    private final Blackhole blackhole;
+
+    public NullAppendable(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public Appendable append(CharSequence text) {
+        blackhole.consume(text);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence text, int start, int end) {
+        blackhole.consume(text);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        blackhole.consume(c);
+        return this;
+    }
+}
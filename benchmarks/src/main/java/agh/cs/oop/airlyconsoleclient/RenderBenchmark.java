@@ -0,0 +1,45 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurementsDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the current measurement panel and of history charts by {@link AsciiPrinter} into a null sink.
+ * Histories longer than the default width are downsampled, so the cost of drawing stays the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({Fixtures.HISTORY_24H, Fixtures.HISTORY_720H, Fixtures.SYNTHETIC_8760H})
+    public String fixture;
+
+    private AllMeasurements measurements;
+    private AsciiPrinter printer;
+    private final Target target = new Target(1234);
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        measurements = new AllMeasurementsDecoder().fromJson(Fixtures.load(fixture));
+        printer = new AsciiPrinter(new NullAppendable(blackhole));
+    }
+
+    @Benchmark
+    public void printSingleMeasurement() {
+        printer.print(measurements, target, false);
+    }
+
+    @Benchmark
+    public void printHistory() {
+        printer.print(measurements, target, true);
+    }
+}
@@ -0,0 +1,82 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Wall-clock time of a one-shot invocation of the application in a new JVM, fetching a sensor from
+ * a {@link StubServer}. With a warm cache the response is served from the disk cache of the application.
+ * <p>
+ * Extra options of the launched JVM can be given as a parameter, e.g. to compare with a CDS archive:
+ * {@code -p jvmOptions=-XX:SharedArchiveFile=app.jsa} (the archive must be created with the same class path,
+ * i.e. by running {@code benchmarks.jar} with '-cp' and the application's main class).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean warmCache;
+
+    @Param({""})
+    public String jvmOptions;
+
+    private StubServer server;
+    private Path home;
+    private List<String> command;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        server = new StubServer(Fixtures.HISTORY_24H);
+        home = Files.createTempDirectory("airly-startup-benchmark");
+
+        command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!jvmOptions.isEmpty()) {
+            command.addAll(Arrays.asList(jvmOptions.split(" ")));
+        }
+        command.addAll(Arrays.asList(
+                "-cp", System.getProperty("java.class.path"),
+                Application.class.getName(),
+                "--api-key", "benchmark",
+                "--sensor-id", "1234",
+                "--base-url", server.getBaseUrl(),
+                "--no-store"));
+        if (!warmCache) {
+            command.add("--no-cache");
+        } else {
+            run();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        try (Stream<Path> files = Files.walk(home)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.environment().put("XDG_CACHE_HOME", home.toString());
+        builder.environment().put("XDG_DATA_HOME", home.toString());
+        return builder.start().waitFor();
+    }
+}
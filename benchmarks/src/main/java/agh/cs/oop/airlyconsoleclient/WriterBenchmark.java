@@ -0,0 +1,65 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurementsDecoder;
+import agh.cs.oop.airlyconsoleclient.output.MeasurementsWriter;
+import agh.cs.oop.airlyconsoleclient.output.OutputFormat;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing of history by the machine-readable output writers into a channel discarding the bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+
+    @Param({"csv", "jsonl", "binary"})
+    public String format;
+
+    @Param({Fixtures.HISTORY_720H, Fixtures.SYNTHETIC_8760H})
+    public String fixture;
+
+    private AllMeasurements measurements;
+    private MeasurementsWriter writer;
+    private final Target target = new Target(1234);
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        measurements = new AllMeasurementsDecoder().fromJson(Fixtures.load(fixture));
+        //noinspection ConstantConditions
+        writer = OutputFormat.parse(format).createWriter(new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) {
+                int length = source.remaining();
+                blackhole.consume(source.get(source.limit() - 1));
+                source.position(source.limit());
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @Benchmark
+    public void writeHistory() throws IOException {
+        writer.write(target, measurements, true);
+        writer.flush();
+    }
+}
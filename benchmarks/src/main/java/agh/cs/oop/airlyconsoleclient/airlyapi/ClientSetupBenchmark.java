@@ -0,0 +1,22 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of an API by {@link AirlyApiFactory}, paid by every invocation of the application
+ * (the HTTP client itself is created lazily, on the first request).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientSetupBenchmark {
+
+    @Benchmark
+    public AirlyApi createAirlyApi() {
+        return new AirlyApiFactory().createAirlyApi();
+    }
+}
@@ -0,0 +1,36 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import agh.cs.oop.airlyconsoleclient.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of {@link AllMeasurements} with the hand-written decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({Fixtures.CURRENT_ONLY, Fixtures.HISTORY_24H, Fixtures.HISTORY_720H, Fixtures.SYNTHETIC_8760H})
+    public String fixture;
+
+    private String json;
+    private AllMeasurementsDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.load(fixture);
+        decoder = new AllMeasurementsDecoder();
+    }
+
+    @Benchmark
+    public AllMeasurements decode() throws IOException {
+        return decoder.fromJson(json);
+    }
+}
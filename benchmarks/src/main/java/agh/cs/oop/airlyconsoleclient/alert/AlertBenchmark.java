@@ -0,0 +1,62 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of alert rules in watch mode: every operation feeds one new hour of every sensor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlertBenchmark {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"5000"})
+    public int sensors;
+
+    private AlertEngine engine;
+    private MeasurementColumns[] histories;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        engine = new AlertEngine(Arrays.asList(
+                AlertRule.parse("pm25 > norm for 3h"),
+                AlertRule.parse("level >= 5"),
+                AlertRule.parse("pm10 rises by 30 in 2h")),
+                sensors, (slot, rule, active, time, value) -> blackhole.consume(slot));
+
+        Random random = new Random(1);
+        histories = new MeasurementColumns[sensors];
+        for (int i = 0; i < sensors; i++) {
+            double pm25 = random.nextDouble() * 60;
+            histories[i] = new MeasurementColumns(1);
+            histories[i].add(0, HOUR_MILLIS, pm25 * 1.2, pm25 * 0.7, pm25, pm25 * 1.3,
+                    101325, 60, 10, 1 + (int) (pm25 / 12));
+        }
+    }
+
+    @Benchmark
+    public void updateAll() {
+        for (int i = 0; i < sensors; i++) {
+            // The next hour, with the values drifting so that rules keep changing their state
+            MeasurementColumns history = histories[i];
+            history.getFromTimes()[0] += HOUR_MILLIS;
+            history.getTillTimes()[0] += HOUR_MILLIS;
+            double pm25 = (history.getPm25()[0] * 7 + 13) % 60;
+            history.getPm25()[0] = pm25;
+            history.getPm10()[0] = (history.getPm10()[0] * 3 + 29) % 90;
+            history.getPollutionLevel()[0] = 1 + (int) (pm25 / 12);
+            engine.update(i, history);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.Fixtures;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurementsDecoder;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning measurement history from a history archive compared with decoding the JSON of {@link AllMeasurements}.
+ * Sizes of both are printed when a trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    private static final String KEY = "sensor-1";
+
+    @Param({Fixtures.HISTORY_720H, Fixtures.SYNTHETIC_8760H})
+    public String fixture;
+
+    private String json;
+    private AllMeasurementsDecoder decoder;
+    private Path file;
+    private ArchiveReader archive;
+    private long lastDay;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Fixtures.load(fixture);
+        decoder = new AllMeasurementsDecoder();
+        MeasurementColumns history = decoder.fromJson(json).getHistoryColumns();
+
+        file = Files.createTempFile("history", ".aira");
+        try (ArchiveWriter writer = new ArchiveWriter(file)) {
+            writer.write(KEY, history);
+        }
+        archive = ArchiveReader.open(file);
+        lastDay = history.getFromTimes()[history.size() - 1] - TimeUnit.HOURS.toMillis(23);
+
+        System.out.printf("%n%d measurements: JSON %d bytes, archive %d bytes%n", history.size(),
+                json.getBytes(StandardCharsets.UTF_8).length, Files.size(file));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        archive.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public MeasurementColumns decodeJson() throws IOException {
+        return decoder.fromJson(json).getHistoryColumns();
+    }
+
+    @Benchmark
+    public MeasurementColumns scanArchive() throws IOException {
+        return archive.read(KEY, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Range query for the last 24 hours, which decodes only the last chunk.
+     */
+    @Benchmark
+    public MeasurementColumns readLastDay() throws IOException {
+        return archive.read(KEY, lastDay, Long.MAX_VALUE);
+    }
+}
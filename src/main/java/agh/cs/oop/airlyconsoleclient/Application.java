@@ -3,12 +3,51 @@ package agh.cs.oop.airlyconsoleclient;
 import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApi;
 import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApiFactory;
 import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.airlyapi.ResponseCache;
+import agh.cs.oop.airlyconsoleclient.airlyapi.TrafficLog;
+import agh.cs.oop.airlyconsoleclient.airlyapi.TrafficRecorder;
+import agh.cs.oop.airlyconsoleclient.alert.AlertEngine;
+import agh.cs.oop.airlyconsoleclient.alert.AlertHook;
+import agh.cs.oop.airlyconsoleclient.alert.AlertPrinter;
+import agh.cs.oop.airlyconsoleclient.alert.AlertRule;
+import agh.cs.oop.airlyconsoleclient.geo.Geohash;
+import agh.cs.oop.airlyconsoleclient.geo.SensorIndex;
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import agh.cs.oop.airlyconsoleclient.output.MeasurementsWriter;
+import agh.cs.oop.airlyconsoleclient.output.OutputFormat;
+import agh.cs.oop.airlyconsoleclient.store.ArchiveReader;
+import agh.cs.oop.airlyconsoleclient.store.ArchiveWriter;
+import agh.cs.oop.airlyconsoleclient.store.HistoryReader;
+import agh.cs.oop.airlyconsoleclient.store.HistoryStore;
+import okhttp3.HttpUrl;
 import org.apache.commons.cli.*;
-import retrofit2.Call;
-import retrofit2.Response;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 import static java.lang.System.*;
 
@@ -18,16 +57,111 @@ public class Application {
     private static final String MSG_MISSING_API_KEY =
             "Airly API key must be provided either as '--api-key' parameter or as 'API_KEY' environment variable.";
     private static final String MSG_MISSING_SENSOR_ID_OR_COORDINATES =
-            "Either '--sensor-id' or '--latitude' and '--longitude' must be specified.";
+            "Either '--sensor-id', '--latitude' and '--longitude' or '--input-file' must be specified.";
+    private static final String MSG_SERVE_WITH_TARGETS = "'--serve' does not accept targets.";
+    private static final String MSG_MISSING_SENSOR_INDEX =
+            "No local index of sensors; import a list of sensors with '--sensors-file' first.";
 
-    private static final Options COMMAND_OPTIONS = new Options()
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 1;
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final long CACHE_SIZE = 10 * 1024 * 1024;
+    private static final int DEFAULT_GRID_PRECISION = 7;
+    private static final int DEFAULT_WATCH_JITTER_SECONDS = 60;
+    private static final double DEFAULT_TIMEOUT_SECONDS = 30;
+    private static final double DEFAULT_LOAD_TEST_RATE = 10.0;
+    private static final int DEFAULT_LOAD_TEST_DURATION_SECONDS = 30;
+    private static final int DEFAULT_SERVE_PORT = 8080;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss", Locale.UK);
+
+    static final Options COMMAND_OPTIONS = new Options()
             .addOption(null, "api-key", true, "Airly API key")
-            .addOption(null, "sensor-id", true, "Sensor ID")
-            .addOption(null, "latitude", true, "Latitude coordinate of an area")
-            .addOption(null, "longitude", true, "Longitude coordinate of an area.")
-            .addOption(null, "history", false, "Displays history of measurement");
+            .addOption(null, "sensor-id", true, "Sensor ID (can be repeated)")
+            .addOption(null, "latitude", true, "Latitude coordinate of an area (can be repeated)")
+            .addOption(null, "longitude", true, "Longitude coordinate of an area (can be repeated)")
+            .addOption(null, "input-file", true, "File with sensor IDs or 'latitude,longitude' pairs, one per line")
+            .addOption(null, "sensors-file", true, "List of sensors to save in the local index used by '--nearest' "
+                    + "and '--radius': JSON of sensors as returned by Airly API, or 'id,latitude,longitude' lines")
+            .addOption(null, "nearest", true, "Fetches the N sensors nearest to each coordinates, found in the local "
+                    + "index, instead of measurements interpolated at the map point")
+            .addOption(null, "radius", true, "Fetches the sensors within the distance in meters of each coordinates "
+                    + "(at most '--nearest' of them)")
+            .addOption(null, "concurrency", true, "Maximum number of concurrent requests (default: "
+                    + DEFAULT_CONCURRENCY + ")")
+            .addOption(null, "grid-precision", true, "Length of geohash of the grid cells coordinates are snapped "
+                    + "to, so that nearby ones share results; 7 is about 150 m, 0 disables snapping (default: "
+                    + DEFAULT_GRID_PRECISION + ")")
+            .addOption(null, "history", false, "Displays history of measurement")
+            .addOption(null, "format", true, "Output format: 'text', or 'csv', 'jsonl' or 'binary' to write one "
+                    + "record per measurement for other programs (default: text)")
+            .addOption(null, "dashboard", false, "Shows the targets as tiles in a grid fitting the terminal width")
+            .addOption(null, "heatmap", true, "Shows a map of 'caqi' or 'pm25' interpolated between the targets "
+                    + "with known locations, e.g. the sensors found by '--radius'")
+            .addOption(null, "width", true, "Width of the terminal; charts of longer histories are downsampled to "
+                    + "fit it (default: $COLUMNS or " + AsciiPrinter.DEFAULT_WIDTH + ")")
+            .addOption(null, "alert", true, "Prints alerts instead of measurements when a rule on hourly measurements "
+                    + "becomes active or inactive, e.g. 'pm25 > norm for 3h', 'level >= 5' or 'pm10 rises by 30 in 2h' "
+                    + "(can be repeated)")
+            .addOption(null, "alert-exec", true, "Runs a shell command on alerts instead of printing them, with "
+                    + "AIRLY_ALERT_* environment variables")
+            .addOption(null, "no-cache", false, "Always fetches fresh data instead of using the local cache")
+            .addOption(null, "no-store", false, "Does not save fetched history in the local store")
+            .addOption(null, "history-days", true, "Displays history of the last N days saved in the local store, "
+                    + "without connecting to the server")
+            .addOption(null, "archive", true, "Displays history read from an archive written by '--export-archive' "
+                    + "instead of the local store, all of it or of the last N days with '--history-days'")
+            .addOption(null, "export-archive", true, "Writes history of the targets saved in the local store, all of "
+                    + "it or of the last N days with '--history-days', to a compressed archive file")
+            .addOption(null, "watch", false, "Keeps running and refreshes data when Airly publishes new measurements")
+            .addOption(null, "watch-jitter", true, "Maximum random delay of refreshes in seconds (default: "
+                    + DEFAULT_WATCH_JITTER_SECONDS + ")")
+            .addOption(null, "timeout", true, "Seconds after which fetching a target fails (default: "
+                    + DEFAULT_TIMEOUT_SECONDS + ")")
+            .addOption(null, "no-hedge", false, "Does not send a duplicate of a request taking longer than 95% "
+                    + "of the responses so far")
+            .addOption(null, "base-url", true, "URL of Airly API server (default: "
+                    + AirlyApiFactory.DEFAULT_BASE_URL + ")")
+            .addOption(null, "load-test", false, "Sends requests for the targets at a constant rate using "
+                    + "'--concurrency' workers and reports latency")
+            .addOption(null, "rate", true, "Requests per second sent by '--load-test' (default: "
+                    + DEFAULT_LOAD_TEST_RATE + ")")
+            .addOption(null, "duration", true, "Duration of '--load-test' in seconds (default: "
+                    + DEFAULT_LOAD_TEST_DURATION_SECONDS + ")")
+            .addOption(null, "serve", false, "Runs a local HTTP server with the routes of Airly API, answering "
+                    + "from an in-memory cache so that local consumers share requests to Airly")
+            .addOption(null, "port", true, "Port of '--serve' on the loopback interface (default: "
+                    + DEFAULT_SERVE_PORT + ")")
+            .addOption(null, "record", true, "Records responses of Airly API to a file, appending to it; disables "
+                    + "the local cache")
+            .addOption(null, "replay", true, "Answers requests with responses recorded by '--record' instead of "
+                    + "connecting to the server, delayed by their recorded durations")
+            .addOption(null, "replay-fast", false, "Replays responses without delays")
+            .addOption(null, "daemon", false, "Keeps running in the background and runs invocations sent by the "
+                    + "'bin/airly-console-client' launcher, without starting a new JVM for each of them")
+            .addOption(null, "stats", false, "Prints timings of the phases of the run and counters of requests, "
+                    + "errors, bytes received and cache hits on exit")
+            .addOption(null, "stats-file", true, "Writes the statistics to a file, as JSON if its name ends with "
+                    + "'.json', in Prometheus text format otherwise; in watch mode it is updated after every refresh");
 
     public static void main(String[] args) {
+        int status = run(args, null);
+        // Watch mode and the proxy server keep running in other threads
+        if (status != EXIT_SUCCESS) {
+            exit(status);
+        }
+    }
+
+    /**
+     * Runs an invocation of the application, printing to {@link System#out} and {@link System#err}.
+     *
+     * @param output stream the output formats are written to, or null to write them straight to the standard output
+     * @return exit status: 0 if the invocation succeeded, 1 if it failed or some of the targets failed
+     */
+    static int run(String[] args, @Nullable OutputStream output) {
+        long startTime = nanoTime();
+        Metrics metrics = new Metrics();
+
         // #1 PARSE ARGUMENTS
         if (args.length == 0) {
             HelpFormatter formatter = new HelpFormatter();
@@ -38,7 +172,7 @@ public class Application {
             err.println();
             err.println("Application: © 2018 Piotr Janczyk. License GPLv3+");
             err.println("Data from Airly.eu");
-            return;
+            return EXIT_FAILURE;
         }
 
         CommandLine cmd;
@@ -46,93 +180,815 @@ public class Application {
             cmd = new DefaultParser().parse(COMMAND_OPTIONS, args);
         } catch (ParseException e) {
             err.println(MSG_INVALID_ARGS);
-            return;
+            return EXIT_FAILURE;
+        }
+
+        if (cmd.hasOption("daemon")) {
+            return runDaemon() ? EXIT_SUCCESS : EXIT_FAILURE;
         }
 
         String apiKey = Optional.ofNullable(cmd.getOptionValue("api-key"))
                 .or(() -> Optional.ofNullable(System.getenv("API_KEY")))
                 .orElse(null);
-        String sensorIdText = cmd.getOptionValue("sensor-id");
-        String latitudeText = cmd.getOptionValue("latitude");
-        String longitudeText = cmd.getOptionValue("longitude");
+        String inputFile = cmd.getOptionValue("input-file");
+        String sensorsFile = cmd.getOptionValue("sensors-file");
+        String nearestText = cmd.getOptionValue("nearest");
+        String radiusText = cmd.getOptionValue("radius");
+        String concurrencyText = cmd.getOptionValue("concurrency");
+        String gridPrecisionText = cmd.getOptionValue("grid-precision");
+        String widthText = cmd.getOptionValue("width");
+        boolean dashboard = cmd.hasOption("dashboard");
+        String heatmapText = cmd.getOptionValue("heatmap");
+        HeatMap.Field heatmapField = heatmapText != null ? HeatMap.Field.parse(heatmapText) : null;
         boolean history = cmd.hasOption("history");
+        OutputFormat format = OutputFormat.parse(cmd.getOptionValue("format", OutputFormat.TEXT.toString()));
+        boolean cache = !cmd.hasOption("no-cache");
+        boolean store = !cmd.hasOption("no-store");
+        String historyDaysText = cmd.getOptionValue("history-days");
+        String archiveFile = cmd.getOptionValue("archive");
+        String exportArchiveFile = cmd.getOptionValue("export-archive");
+        boolean watch = cmd.hasOption("watch");
+        String watchJitterText = cmd.getOptionValue("watch-jitter");
+        String timeoutText = cmd.getOptionValue("timeout");
+        boolean hedge = !cmd.hasOption("no-hedge");
+        String baseUrl = cmd.getOptionValue("base-url", AirlyApiFactory.DEFAULT_BASE_URL);
+        boolean loadTest = cmd.hasOption("load-test");
+        String rateText = cmd.getOptionValue("rate");
+        String durationText = cmd.getOptionValue("duration");
+        boolean serve = cmd.hasOption("serve");
+        String recordFile = cmd.getOptionValue("record");
+        String replayFile = cmd.getOptionValue("replay");
+        boolean replayFast = cmd.hasOption("replay-fast");
+        String portText = cmd.getOptionValue("port");
+        String[] alertTexts = cmd.getOptionValues("alert");
+        String alertCommand = cmd.getOptionValue("alert-exec");
+        boolean stats = cmd.hasOption("stats");
+        String statsFile = cmd.getOptionValue("stats-file");
 
-        Integer sensorId = null;
-        Double latitude = null;
-        Double longitude = null;
+        List<Target> targets;
+        int nearest = 0;
+        double radius = Double.POSITIVE_INFINITY;
+        int concurrency = DEFAULT_CONCURRENCY;
+        int gridPrecision = DEFAULT_GRID_PRECISION;
+        int width = AsciiPrinter.detectWidth();
+        int historyDays = 0;
+        int watchJitter = DEFAULT_WATCH_JITTER_SECONDS;
+        double timeout = DEFAULT_TIMEOUT_SECONDS;
+        double rate = DEFAULT_LOAD_TEST_RATE;
+        int duration = DEFAULT_LOAD_TEST_DURATION_SECONDS;
+        int port = DEFAULT_SERVE_PORT;
+        List<AlertRule> alertRules = new ArrayList<>();
 
         try {
-            if (sensorIdText != null)
-                sensorId = Integer.parseUnsignedInt(sensorIdText);
-            if (latitudeText != null)
-                latitude = Double.parseDouble(latitudeText);
-            if (longitudeText != null)
-                longitude = Double.parseDouble(longitudeText);
+            targets = parseTargets(cmd);
+            // Incomplete coordinates are reported below
+            if (inputFile != null && targets != null)
+                targets.addAll(readTargets(Paths.get(inputFile)));
+            if (nearestText != null)
+                nearest = Integer.parseUnsignedInt(nearestText);
+            if (radiusText != null)
+                radius = Double.parseDouble(radiusText);
+            if (concurrencyText != null)
+                concurrency = Integer.parseUnsignedInt(concurrencyText);
+            if (gridPrecisionText != null)
+                gridPrecision = Integer.parseUnsignedInt(gridPrecisionText);
+            if (widthText != null)
+                width = Integer.parseUnsignedInt(widthText);
+            if (historyDaysText != null)
+                historyDays = Integer.parseUnsignedInt(historyDaysText);
+            if (watchJitterText != null)
+                watchJitter = Integer.parseUnsignedInt(watchJitterText);
+            if (timeoutText != null)
+                timeout = Double.parseDouble(timeoutText);
+            if (rateText != null)
+                rate = Double.parseDouble(rateText);
+            if (durationText != null)
+                duration = Integer.parseUnsignedInt(durationText);
+            if (portText != null)
+                port = Integer.parseUnsignedInt(portText);
         } catch (NumberFormatException e) {
             err.println(MSG_INVALID_ARGS);
-            return;
+            return EXIT_FAILURE;
+        } catch (IOException e) {
+            err.println("Failed to read input file: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+
+        try {
+            if (alertTexts != null)
+                for (String alertText : alertTexts)
+                    alertRules.add(AlertRule.parse(alertText));
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
         }
 
         if (apiKey == null) {
             err.println(MSG_MISSING_API_KEY);
-            return;
+            return EXIT_FAILURE;
         }
 
-        Arguments arguments;
+        if (serve && (targets == null || !targets.isEmpty())) {
+            err.println(MSG_SERVE_WITH_TARGETS);
+            return EXIT_FAILURE;
+        }
 
-        if (sensorId != null && latitude == null && longitude == null) {
-            arguments = new Arguments(apiKey, sensorId, history);
-        } else if (sensorId == null && latitude != null && longitude != null) {
-            arguments = new Arguments(apiKey, latitude, longitude, history);
-        } else {
+        if (!serve && (targets == null || targets.isEmpty())) {
             err.println(MSG_MISSING_SENSOR_ID_OR_COORDINATES);
-            return;
+            return EXIT_FAILURE;
+        }
+
+        if (!baseUrl.endsWith("/")) {
+            baseUrl += "/";
+        }
+
+        if (format == null
+                || (nearestText != null && nearest < 1)
+                || !(radius > 0)
+                || concurrency < 1
+                || !(timeout > 0)
+                || gridPrecision > Geohash.MAX_PRECISION
+                || !(rate > 0)
+                || port > 65535
+                || (recordFile != null && replayFile != null)
+                || (archiveFile != null && exportArchiveFile != null)
+                || (alertCommand != null && alertRules.isEmpty())
+                || HttpUrl.parse(baseUrl) == null
+                || (heatmapText != null && (heatmapField == null || dashboard || format != OutputFormat.TEXT))) {
+            err.println(MSG_INVALID_ARGS);
+            return EXIT_FAILURE;
+        }
+
+        SensorIndex index = null;
+        if (sensorsFile != null || nearestText != null || radiusText != null) {
+            long indexStart = nanoTime();
+            try {
+                index = loadSensorIndex(sensorsFile != null ? Paths.get(sensorsFile) : null);
+            } catch (NoSuchFileException e) {
+                err.println(sensorsFile != null ? "Failed to read the list of sensors: " + e.getMessage()
+                        : MSG_MISSING_SENSOR_INDEX);
+                return EXIT_FAILURE;
+            } catch (IOException e) {
+                err.println("Failed to load the index of sensors: " + e.getMessage());
+                return EXIT_FAILURE;
+            }
+            if (nearestText != null || radiusText != null) {
+                targets = findNearestSensors(targets, index, nearestText != null ? nearest : Integer.MAX_VALUE, radius);
+                if (targets.isEmpty() && !serve) {
+                    return EXIT_FAILURE;
+                }
+            }
+            metrics.record("sensor_index", nanoTime() - indexStart);
+        }
+
+        double[][] locations = {new double[0], new double[0]};
+        if (heatmapField != null) {
+            if (index == null) {
+                try {
+                    index = loadSensorIndex(null);
+                } catch (NoSuchFileException e) {
+                    // Sensors are reported as having unknown locations
+                } catch (IOException e) {
+                    err.println("Failed to load the index of sensors: " + e.getMessage());
+                    return EXIT_FAILURE;
+                }
+            }
+            locations = locateTargets(targets, index);
+        }
+
+        Arguments arguments = new Arguments.Builder(apiKey, targets, baseUrl)
+                .history(history)
+                .concurrency(concurrency)
+                .cache(cache && !loadTest && recordFile == null && replayFile == null)
+                .store(store && !loadTest)
+                .historyDays(historyDays)
+                .archive(archiveFile != null ? Paths.get(archiveFile) : null,
+                        exportArchiveFile != null ? Paths.get(exportArchiveFile) : null)
+                .gridPrecision(gridPrecision)
+                .format(format)
+                .width(width)
+                .dashboard(dashboard)
+                .heatmap(heatmapField, locations[0], locations[1])
+                .watch(watch, TimeUnit.SECONDS.toMillis(watchJitter))
+                .timeout((long) (timeout * 1000), hedge)
+                .loadTest(loadTest, rate, TimeUnit.SECONDS.toMillis(duration))
+                .serve(serve, port)
+                .alerts(alertRules, alertCommand)
+                .record(recordFile != null ? Paths.get(recordFile) : null)
+                .replay(replayFile != null ? Paths.get(replayFile) : null, replayFast)
+                .stats(stats, statsFile != null ? Paths.get(statsFile) : null)
+                .build();
+
+        metrics.record("parse_arguments", nanoTime() - startTime);
+        if (arguments.stats || arguments.statsFile != null) {
+            // Also reports the statistics of watch mode, which ends only when interrupted
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                metrics.record("total", nanoTime() - startTime);
+                reportMetrics(metrics, arguments);
+            }));
+        }
+
+        // The recorder is closed when the invocation ends, also in the daemon which keeps running
+        try (TrafficRecorder recorder = arguments.recordFile != null
+                ? new TrafficRecorder(arguments.recordFile) : null) {
+            return run(createFactory(arguments, recorder), arguments, metrics, output);
+        } catch (IOException e) {
+            err.println("Failed to open the traffic log: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Runs an invocation with parsed arguments.
+     *
+     * @return exit status
+     */
+    private static int run(AirlyApiFactory factory, Arguments arguments, Metrics metrics,
+                           @Nullable OutputStream output) {
+        if (arguments.loadTest) {
+            try {
+                new LoadTester(factory, arguments.apiKey,
+                        arguments.targets, arguments.loadTestRate, arguments.concurrency,
+                        TimeUnit.MILLISECONDS.toNanos(arguments.loadTestDurationMillis)).run(out);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return EXIT_SUCCESS;
+        }
+
+        if (arguments.serve) {
+            return serve(createApi(factory, arguments, metrics), arguments, metrics)
+                    ? EXIT_SUCCESS : EXIT_FAILURE;
         }
 
-        // #2 GET DATA FROM SERVER
-        Call<AllMeasurements> call = prepareCall(arguments);
+        HistoryStore historyStore = new HistoryStore(HistoryStore.defaultDirectory());
+        if (arguments.exportArchiveFile != null) {
+            return exportArchive(historyStore, arguments.exportArchiveFile, arguments, metrics)
+                    ? EXIT_SUCCESS : EXIT_FAILURE;
+        }
+
+        AsciiPrinter printer = new AsciiPrinter(out, arguments.width);
+        // Writes go straight to the file descriptor, bypassing the buffer of System.out
+        MeasurementsWriter writer = arguments.format.createWriter(output != null ? Channels.newChannel(output)
+                : new FileOutputStream(FileDescriptor.out).getChannel());
+
+        ArchiveReader archive = null;
+        if (arguments.archiveFile != null) {
+            try {
+                archive = ArchiveReader.open(arguments.archiveFile);
+            } catch (IOException e) {
+                err.println("Failed to open the archive: " + e.getMessage());
+                return EXIT_FAILURE;
+            }
+        }
 
-        Response<AllMeasurements> response;
+        boolean successful;
         try {
-            response = call.execute();
+            if (archive != null) {
+                try (ArchiveReader reader = archive) {
+                    successful = printStoredHistory(printer, writer, reader, "the archive", arguments, metrics);
+                }
+            } else if (arguments.historyDays > 0) {
+                successful = printStoredHistory(printer, writer, historyStore, "the local store", arguments, metrics);
+            } else {
+                successful = fetchAndPrint(factory, printer, writer, historyStore, arguments, metrics);
+            }
+            if (writer != null) {
+                writer.close();
+            }
         } catch (IOException e) {
-            err.println("Failed to connect to the server: " + e.getMessage());
-            return;
-        } catch (Exception e) {
-            err.println("An unexpected error occurred during creating the request or decoding the response");
-            return;
+            err.println("Failed to write output: " + e.getMessage());
+            return EXIT_FAILURE;
         }
+        return successful ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
 
-        if (!response.isSuccessful()) {
-            if (response.code() == 401 || response.code() == 403) {
-                err.print("Invalid API Key: ");
+    /**
+     * Fetches measurements of the targets and prints them, once or, in watch mode, whenever they change.
+     *
+     * @param writer writer of the output format, or null to print text
+     * @return whether the measurements of all the targets were fetched
+     */
+    private static boolean fetchAndPrint(AirlyApiFactory factory, AsciiPrinter printer,
+                                      @Nullable MeasurementsWriter writer, HistoryStore historyStore,
+                                      Arguments arguments, Metrics metrics) throws IOException {
+        // #2 GET DATA FROM SERVER & #3 PRINT DATA
+        AirlyApi api = createApi(factory, arguments, metrics);
+
+        try (MeasurementsFetcher fetcher = new MeasurementsFetcher(api, arguments.apiKey, arguments.concurrency,
+                arguments.store ? historyStore : null, arguments.gridPrecision, arguments.timeoutMillis,
+                arguments.hedging ? AirlyApiFactory.getRateLimiter(arguments.apiKey) : null, metrics)) {
+            if (!arguments.alertRules.isEmpty()) {
+                return fetchAndAlert(fetcher, arguments);
             }
-            err.println(String.format("Server returned: %d %s", response.code(), response.message()));
-            return;
+
+            BiFunction<List<Target>, List<FetchResult>, TerminalFrame> view = createView(arguments);
+
+            if (arguments.watch) {
+                TerminalFrame[] shownFrame = {null};
+                AllMeasurements[] written = new AllMeasurements[arguments.targets.size()];
+                new Watcher(fetcher, arguments.targets, arguments.watchJitterMillis, results -> {
+                    long printStart = nanoTime();
+                    if (writer != null) {
+                        writeWatchedResults(writer, results, arguments, written);
+                    } else {
+                        shownFrame[0] = printWatchedResults(printer, view, results, arguments, shownFrame[0]);
+                    }
+                    metrics.record("print", nanoTime() - printStart);
+                    if (arguments.statsFile != null) {
+                        writeMetricsFile(metrics, arguments.statsFile);
+                    }
+                }).run();
+                return true;
+            }
+
+            boolean successful = true;
+            if (view != null && writer == null) {
+                List<FetchResult> results = new ArrayList<>(arguments.targets.size());
+                for (CompletableFuture<FetchResult> future : fetcher.fetchAll(arguments.targets)) {
+                    FetchResult result = future.join();
+                    successful &= result.isSuccessful();
+                    results.add(result);
+                }
+                long printStart = nanoTime();
+                view.apply(arguments.targets, results).writeTo(out);
+                metrics.record("print", nanoTime() - printStart);
+                return successful;
+            }
+
+            boolean batch = arguments.targets.size() > 1;
+
+            // Results are printed in input order as soon as all the preceding ones are available
+            for (CompletableFuture<FetchResult> future : fetcher.fetchAll(arguments.targets)) {
+                FetchResult result = future.join();
+
+                if (result.isSuccessful()) {
+                    long printStart = nanoTime();
+                    if (writer != null) {
+                        //noinspection ConstantConditions
+                        writer.write(result.target, result.measurements, arguments.history);
+                    } else {
+                        //noinspection ConstantConditions
+                        printer.print(result.measurements, result.target, arguments.history);
+                    }
+                    metrics.record("print", nanoTime() - printStart);
+                } else if (batch) {
+                    err.println(result.target + ": " + result.errorMessage);
+                    successful = false;
+                } else {
+                    err.println(result.errorMessage);
+                    successful = false;
+                }
+
+                if (batch && writer == null) {
+                    out.println();
+                }
+            }
+            return successful;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates a factory of APIs of the server, recording the traffic with the recorder or replaying it as requested
+     * in the arguments.
+     */
+    private static AirlyApiFactory createFactory(Arguments arguments, @Nullable TrafficRecorder recorder)
+            throws IOException {
+        return new AirlyApiFactory()
+                .setBaseUrl(arguments.baseUrl)
+                .setRecorder(recorder)
+                .setReplay(arguments.replayFile != null ? TrafficLog.read(arguments.replayFile) : null,
+                        !arguments.replayFast);
+    }
+
+    private static AirlyApi createApi(AirlyApiFactory factory, Arguments arguments, Metrics metrics) {
+        long createApiStart = nanoTime();
+        AirlyApi api = factory
+                .setCache(arguments.cache ? new ResponseCache(ResponseCache.defaultDirectory(), CACHE_SIZE) : null)
+                .setRateLimited(true)
+                .setMetrics(metrics)
+                .createAirlyApi();
+        metrics.record("create_api", nanoTime() - createApiStart);
+        return api;
+    }
+
+    /**
+     * Runs invocations sent by the launcher until the process is terminated.
+     *
+     * @return false if the daemon could not be started
+     */
+    private static boolean runDaemon() {
+        ClientDaemon daemon;
+        try {
+            daemon = ClientDaemon.start(ClientDaemon.defaultFile());
+        } catch (IOException e) {
+            err.println("Failed to start the daemon: " + e.getMessage());
+            return false;
+        }
+        err.println("Running invocations sent to " + daemon.getAddress().getAddress().getHostAddress() + ":"
+                + daemon.getAddress().getPort() + " (" + ClientDaemon.defaultFile() + ")");
+        daemon.run();
+        return true;
+    }
+
+    /**
+     * Starts the proxy server on the loopback interface. It keeps the application running until it is interrupted.
+     *
+     * @return false if the server could not be started
+     */
+    private static boolean serve(AirlyApi api, Arguments arguments, Metrics metrics) {
+        ProxyServer server;
+        try {
+            server = new ProxyServer(api, arguments.apiKey, arguments.gridPrecision, metrics,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), arguments.servePort));
+        } catch (IOException e) {
+            err.println("Failed to start the server: " + e.getMessage());
+            return false;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        err.println("Serving on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/");
+        return true;
+    }
+
+    /**
+     * Prints history of the targets saved in the local store or an archive.
+     *
+     * @param storeName name of the store in messages
+     * @return whether history of all the targets was printed
+     */
+    private static boolean printStoredHistory(AsciiPrinter printer, @Nullable MeasurementsWriter writer,
+                                           HistoryReader store, String storeName, Arguments arguments,
+                                           Metrics metrics) throws IOException {
+        boolean batch = arguments.targets.size() > 1;
+        boolean successful = true;
+        long now = currentTimeMillis();
+        long from = arguments.historyDays > 0 ? now - TimeUnit.DAYS.toMillis(arguments.historyDays) : Long.MIN_VALUE;
+
+        for (Target target : arguments.targets) {
+            MeasurementColumns history;
+            long readStart = nanoTime();
+            try {
+                history = store.read(target.snapToGrid(arguments.gridPrecision).getKey(), from, now);
+                metrics.record("read_store", nanoTime() - readStart);
+            } catch (IOException e) {
+                err.println(target + ": Failed to read " + storeName + ": " + e.getMessage());
+                successful = false;
+                continue;
+            }
+
+            if (history.size() > 0) {
+                long printStart = nanoTime();
+                if (writer != null) {
+                    writer.write(target, new AllMeasurements(null, history), true);
+                } else {
+                    printer.print(new AllMeasurements(null, history), target, true);
+                }
+                metrics.record("print", nanoTime() - printStart);
+            } else {
+                err.println(target + ": No history saved in " + storeName);
+                successful = false;
+            }
+
+            if (batch && writer == null) {
+                out.println();
+            }
+        }
+        return successful;
+    }
+
+    /**
+     * Writes history of the targets saved in the local store to a compressed archive.
+     *
+     * @return whether history of all the targets was written
+     */
+    private static boolean exportArchive(HistoryStore store, Path archiveFile, Arguments arguments, Metrics metrics) {
+        long now = currentTimeMillis();
+        long from = arguments.historyDays > 0 ? now - TimeUnit.DAYS.toMillis(arguments.historyDays) : Long.MIN_VALUE;
+        long exportStart = nanoTime();
+        int exported = 0;
+        boolean successful = true;
+
+        try (ArchiveWriter archive = new ArchiveWriter(archiveFile)) {
+            for (Target target : arguments.targets) {
+                String key = target.snapToGrid(arguments.gridPrecision).getKey();
+                MeasurementColumns history;
+                try {
+                    history = store.read(key, from, now);
+                } catch (IOException e) {
+                    err.println(target + ": Failed to read the local store: " + e.getMessage());
+                    successful = false;
+                    continue;
+                }
+                if (history.size() == 0) {
+                    err.println(target + ": No history saved in the local store");
+                    successful = false;
+                    continue;
+                }
+                exported += archive.write(key, history);
+            }
+        } catch (IOException e) {
+            err.println("Failed to write the archive: " + e.getMessage());
+            return false;
         }
 
-        AllMeasurements measurements = response.body();
+        metrics.record("export_archive", nanoTime() - exportStart);
+        err.println("Exported " + exported + " measurements to " + archiveFile);
+        return successful;
+    }
 
-        if (measurements == null
-                || measurements.getCurrentMeasurements() == null
-                || measurements.getCurrentMeasurements().getPollutionLevel() == -1) {
-            err.println("No results found");
+    /**
+     * Prints the statistics to stderr and writes them to the statistics file, as requested in the arguments.
+     */
+    private static void reportMetrics(Metrics metrics, Arguments arguments) {
+        if (arguments.stats) {
+            StringBuilder text = new StringBuilder("\n");
+            try {
+                metrics.writeText(text);
+            } catch (IOException ignored) {
+                // StringBuilder does not throw
+            }
+            err.print(text);
+            err.flush();
+        }
+        if (arguments.statsFile != null) {
+            writeMetricsFile(metrics, arguments.statsFile);
+        }
+    }
+
+    /**
+     * Replaces the file with the current statistics, so that a reader never sees a partially written file.
+     */
+    private static void writeMetricsFile(Metrics metrics, Path path) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            if (path.getFileName().toString().endsWith(".json")) {
+                metrics.writeJson(writer);
+            } else {
+                metrics.writePrometheus(writer);
+            }
+        } catch (IOException e) {
+            err.println("Failed to write statistics: " + e.getMessage());
             return;
         }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            err.println("Failed to write statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Evaluates the alert rules over the measurements of the targets, fetched once or, in watch mode, whenever
+     * they change, and reports the alerts.
+     *
+     * @return whether the measurements of all the targets were fetched
+     */
+    private static boolean fetchAndAlert(MeasurementsFetcher fetcher, Arguments arguments) throws InterruptedException {
+        List<String> names = new ArrayList<>(arguments.targets.size());
+        for (Target target : arguments.targets) {
+            names.add(target.toString());
+        }
+        AlertEngine engine = new AlertEngine(arguments.alertRules, arguments.targets.size(),
+                arguments.alertCommand != null ? new AlertHook(arguments.alertCommand, names)
+                        : new AlertPrinter(out, names));
+
+        if (arguments.watch) {
+            AllMeasurements[] evaluated = new AllMeasurements[arguments.targets.size()];
+            new Watcher(fetcher, arguments.targets, arguments.watchJitterMillis, results -> {
+                for (int i = 0; i < results.size(); i++) {
+                    FetchResult result = results.get(i);
+                    if (result != null && result.isSuccessful() && result.measurements != evaluated[i]) {
+                        //noinspection ConstantConditions
+                        engine.update(i, result.measurements.getHistoryColumns());
+                        evaluated[i] = result.measurements;
+                    }
+                }
+            }).run();
+            return true;
+        }
+
+        boolean successful = true;
+
+        List<CompletableFuture<FetchResult>> futures = fetcher.fetchAll(arguments.targets);
+        for (int i = 0; i < futures.size(); i++) {
+            FetchResult result = futures.get(i).join();
+            if (result.isSuccessful()) {
+                //noinspection ConstantConditions
+                engine.update(i, result.measurements.getHistoryColumns());
+            } else {
+                err.println(result.target + ": " + result.errorMessage);
+                successful = false;
+            }
+        }
+        return successful;
+    }
+
+    /**
+     * Writes the results of watched targets which were updated since they were last written.
+     *
+     * @param written measurements last written for each target, updated by this method
+     */
+    private static void writeWatchedResults(MeasurementsWriter writer, List<FetchResult> results,
+                                            Arguments arguments, AllMeasurements[] written) {
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                FetchResult result = results.get(i);
+                if (result != null && result.isSuccessful() && result.measurements != written[i]) {
+                    //noinspection ConstantConditions
+                    writer.write(result.target, result.measurements, arguments.history);
+                    written[i] = result.measurements;
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            err.println("Failed to write output: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the view drawing all the targets at once, if one is requested instead of printing them one by one.
+     */
+    private static @Nullable BiFunction<List<Target>, List<FetchResult>, TerminalFrame> createView(
+            Arguments arguments) {
+        if (arguments.heatmapField != null) {
+            return new HeatMap(arguments.heatmapField, arguments.width, arguments.targetLatitudes,
+                    arguments.targetLongitudes)::draw;
+        } else if (arguments.dashboard) {
+            return new Dashboard(arguments.width, arguments.history)::draw;
+        }
+        return null;
+    }
+
+    /**
+     * Updates the screen with the latest results of watched targets. Only the cells that changed since
+     * the previously shown frame are written.
+     *
+     * @return the frame that is shown now
+     */
+    private static TerminalFrame printWatchedResults(
+            AsciiPrinter printer, @Nullable BiFunction<List<Target>, List<FetchResult>, TerminalFrame> view,
+            List<FetchResult> results, Arguments arguments, @Nullable TerminalFrame shownFrame) {
+        TerminalFrame frame = new TerminalFrame();
+        frame.println("Updated at " + TIME_FORMATTER.format(LocalTime.now()));
+        frame.println();
+
+        if (view != null) {
+            frame.draw(view.apply(arguments.targets, results), frame.getHeight(), 0);
+            frame.writeDiffTo(out, shownFrame);
+            return frame;
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            FetchResult result = results.get(i);
+
+            if (result == null) {
+                frame.println(arguments.targets.get(i).toString());
+                frame.println("Waiting for data...");
+            } else if (result.isSuccessful()) {
+                //noinspection ConstantConditions
+                if (!printer.draw(frame, result.measurements, result.target, arguments.history)) {
+                    frame.println("No results");
+                }
+            } else {
+                frame.println(result.target.toString());
+                frame.println(result.errorMessage);
+            }
+            frame.println();
+        }
 
-        // #3 PRINT DATA
-        new AsciiPrinter().print(response.body(), arguments);
+        frame.writeDiffTo(out, shownFrame);
+        return frame;
     }
 
-    private static Call<AllMeasurements> prepareCall(Arguments arguments) {
-        AirlyApi api = new AirlyApiFactory().createAirlyApi();
+    /**
+     * Collects targets given as '--sensor-id' and '--latitude' & '--longitude' options, keeping their order.
+     *
+     * @return targets, or null if a latitude is not paired with a longitude
+     */
+    private static @Nullable List<Target> parseTargets(CommandLine cmd) {
+        List<Target> targets = new ArrayList<>();
+        Double latitude = null;
+        Double longitude = null;
 
-        if (arguments.sensorId != null) {
-            return api.sensorMeasurements(arguments.apiKey, arguments.sensorId);
-        } else {
+        for (Option option : cmd.getOptions()) {
+            switch (option.getLongOpt()) {
+                case "sensor-id":
+                    if (latitude != null || longitude != null)
+                        return null;
+                    targets.add(new Target(Integer.parseUnsignedInt(option.getValue())));
+                    break;
+                case "latitude":
+                    if (latitude != null)
+                        return null;
+                    latitude = Double.parseDouble(option.getValue());
+                    break;
+                case "longitude":
+                    if (longitude != null)
+                        return null;
+                    longitude = Double.parseDouble(option.getValue());
+                    break;
+            }
+
+            if (latitude != null && longitude != null) {
+                targets.add(new Target(latitude, longitude));
+                latitude = null;
+                longitude = null;
+            }
+        }
+
+        return latitude == null && longitude == null ? targets : null;
+    }
+
+    /**
+     * Reads the list of sensors and saves its index in place of the local one, or, without a list,
+     * reads the local index.
+     *
+     * @throws NoSuchFileException if the list or the local index does not exist
+     */
+    private static SensorIndex loadSensorIndex(@Nullable Path sensorsFile) throws IOException {
+        Path indexFile = HistoryStore.defaultDirectory().resolveSibling("sensors.idx");
+        if (sensorsFile == null) {
+            return SensorIndex.read(indexFile);
+        }
+        SensorIndex index = SensorIndex.readList(sensorsFile);
+        index.write(indexFile);
+        return index;
+    }
+
+    /**
+     * Replaces every map point with the sensors nearest to it, nearest first. Sensors are not repeated.
+     *
+     * @param count  maximum number of sensors of a map point
+     * @param radius maximum distance in meters of the sensors from their map point
+     */
+    private static List<Target> findNearestSensors(List<Target> targets, SensorIndex index, int count,
+                                                   double radius) {
+        Set<Integer> found = new HashSet<>();
+        List<Target> sensors = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            int[] ids;
+            if (target.sensorId != null) {
+                ids = new int[]{target.sensorId};
+            } else if (radius == Double.POSITIVE_INFINITY) {
+                //noinspection ConstantConditions
+                ids = index.nearest(target.latitude, target.longitude, count);
+            } else {
+                //noinspection ConstantConditions
+                ids = index.within(target.latitude, target.longitude, radius, count);
+            }
+
+            if (ids.length == 0) {
+                err.println("No sensors near " + target);
+            }
+            for (int id : ids) {
+                if (found.add(id)) {
+                    sensors.add(new Target(id));
+                }
+            }
+        }
+        return sensors;
+    }
+
+    /**
+     * Finds locations of the targets: of map points directly, of sensors in the index.
+     *
+     * @return latitudes and longitudes of the targets, NaN if unknown
+     */
+    private static double[][] locateTargets(List<Target> targets, @Nullable SensorIndex index) {
+        double[] latitudes = new double[targets.size()];
+        double[] longitudes = new double[targets.size()];
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
             //noinspection ConstantConditions
-            return api.mapPointMeasurements(arguments.apiKey, arguments.latitude, arguments.longitude);
+            double[] location = target.sensorId == null ? new double[]{target.latitude, target.longitude}
+                    : index != null ? index.locate(target.sensorId) : null;
+            if (location == null) {
+                err.println(target + ": Unknown location; import a list of sensors with '--sensors-file'");
+                location = new double[]{Double.NaN, Double.NaN};
+            }
+            latitudes[i] = location[0];
+            longitudes[i] = location[1];
+        }
+        return new double[][]{latitudes, longitudes};
+    }
+
+    /**
+     * Reads targets from a file. Empty lines and lines starting with '#' are skipped.
+     */
+    private static List<Target> readTargets(Path path) throws IOException {
+        List<Target> targets = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                targets.add(Target.parse(line));
+            }
         }
+        return targets;
     }
 
 }
@@ -1,27 +1,271 @@
 package agh.cs.oop.airlyconsoleclient;
 
+import agh.cs.oop.airlyconsoleclient.alert.AlertRule;
+import agh.cs.oop.airlyconsoleclient.output.OutputFormat;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Arguments {
     public final String apiKey;
-    public final @Nullable Integer sensorId;
-    public final @Nullable Double latitude;
-    public final @Nullable Double longitude;
+    public final List<Target> targets;
     public final boolean history;
+    public final int concurrency;
+    public final boolean cache;
+    public final boolean store;
+    public final int historyDays;
+    public final @Nullable Path archiveFile;
+    public final @Nullable Path exportArchiveFile;
+    public final int gridPrecision;
+    public final String baseUrl;
+    public final OutputFormat format;
+    public final int width;
+    public final boolean dashboard;
+    public final @Nullable HeatMap.Field heatmapField;
+    public final double[] targetLatitudes;
+    public final double[] targetLongitudes;
+    public final boolean watch;
+    public final long watchJitterMillis;
+    public final long timeoutMillis;
+    public final boolean hedging;
+    public final boolean loadTest;
+    public final double loadTestRate;
+    public final long loadTestDurationMillis;
+    public final boolean serve;
+    public final int servePort;
+    public final List<AlertRule> alertRules;
+    public final @Nullable String alertCommand;
+    public final @Nullable Path recordFile;
+    public final @Nullable Path replayFile;
+    public final boolean replayFast;
+    public final boolean stats;
+    public final @Nullable Path statsFile;
 
-    public Arguments(String apiKey, int sensorId, boolean history) {
-        this.apiKey = apiKey;
-        this.sensorId = sensorId;
-        this.latitude = null;
-        this.longitude = null;
-        this.history = history;
+    private Arguments(Builder builder) {
+        this.apiKey = builder.apiKey;
+        this.targets = Collections.unmodifiableList(new ArrayList<>(builder.targets));
+        this.history = builder.history;
+        this.concurrency = builder.concurrency;
+        this.cache = builder.cache;
+        this.store = builder.store;
+        this.historyDays = builder.historyDays;
+        this.archiveFile = builder.archiveFile;
+        this.exportArchiveFile = builder.exportArchiveFile;
+        this.gridPrecision = builder.gridPrecision;
+        this.baseUrl = builder.baseUrl;
+        this.format = builder.format;
+        this.width = builder.width;
+        this.dashboard = builder.dashboard;
+        this.heatmapField = builder.heatmapField;
+        this.targetLatitudes = builder.targetLatitudes;
+        this.targetLongitudes = builder.targetLongitudes;
+        this.watch = builder.watch;
+        this.watchJitterMillis = builder.watchJitterMillis;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.hedging = builder.hedging;
+        this.loadTest = builder.loadTest;
+        this.loadTestRate = builder.loadTestRate;
+        this.loadTestDurationMillis = builder.loadTestDurationMillis;
+        this.serve = builder.serve;
+        this.servePort = builder.servePort;
+        this.alertRules = builder.alertRules;
+        this.alertCommand = builder.alertCommand;
+        this.recordFile = builder.recordFile;
+        this.replayFile = builder.replayFile;
+        this.replayFast = builder.replayFast;
+        this.stats = builder.stats;
+        this.statsFile = builder.statsFile;
     }
 
-    public Arguments(String apiKey, double latitude, double longitude, boolean history) {
-        this.apiKey = apiKey;
-        this.sensorId = null;
-        this.latitude = latitude;
-        this.longitude = longitude;
-        this.history = history;
+    public static class Builder {
+        private final String apiKey;
+        private final List<Target> targets;
+        private final String baseUrl;
+        private boolean history;
+        private int concurrency = 1;
+        private boolean cache;
+        private boolean store;
+        private int historyDays;
+        private @Nullable Path archiveFile;
+        private @Nullable Path exportArchiveFile;
+        private int gridPrecision;
+        private OutputFormat format = OutputFormat.TEXT;
+        private int width = AsciiPrinter.DEFAULT_WIDTH;
+        private boolean dashboard;
+        private @Nullable HeatMap.Field heatmapField;
+        private double[] targetLatitudes = new double[0];
+        private double[] targetLongitudes = new double[0];
+        private boolean watch;
+        private long watchJitterMillis;
+        private long timeoutMillis = Long.MAX_VALUE;
+        private boolean hedging;
+        private boolean loadTest;
+        private double loadTestRate;
+        private long loadTestDurationMillis;
+        private boolean serve;
+        private int servePort;
+        private List<AlertRule> alertRules = Collections.emptyList();
+        private @Nullable String alertCommand;
+        private @Nullable Path recordFile;
+        private @Nullable Path replayFile;
+        private boolean replayFast;
+        private boolean stats;
+        private @Nullable Path statsFile;
+
+        public Builder(String apiKey, List<Target> targets, String baseUrl) {
+            this.apiKey = apiKey;
+            this.targets = targets;
+            this.baseUrl = baseUrl;
+        }
+
+        public Builder history(boolean history) {
+            this.history = history;
+            return this;
+        }
+
+        public Builder concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder cache(boolean cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder store(boolean store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * @param historyDays number of days of history to read from the store instead of fetching, 0 to fetch
+         */
+        public Builder historyDays(int historyDays) {
+            this.historyDays = historyDays;
+            return this;
+        }
+
+        /**
+         * @param archiveFile       history archive to read history from instead of the store, or null
+         * @param exportArchiveFile history archive to write history from the store to instead of fetching, or null
+         */
+        public Builder archive(@Nullable Path archiveFile, @Nullable Path exportArchiveFile) {
+            this.archiveFile = archiveFile;
+            this.exportArchiveFile = exportArchiveFile;
+            return this;
+        }
+
+        /**
+         * @param gridPrecision length of geohashes of the grid map points are snapped to, 0 to disable snapping
+         */
+        public Builder gridPrecision(int gridPrecision) {
+            this.gridPrecision = gridPrecision;
+            return this;
+        }
+
+        public Builder format(OutputFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * @param width number of terminal columns the charts should fit in
+         */
+        public Builder width(int width) {
+            this.width = width;
+            return this;
+        }
+
+        public Builder dashboard(boolean dashboard) {
+            this.dashboard = dashboard;
+            return this;
+        }
+
+        /**
+         * @param field      value shown on a heat map instead of the measurements, or null
+         * @param latitudes  locations of the targets, NaN if unknown
+         * @param longitudes as above
+         */
+        public Builder heatmap(@Nullable HeatMap.Field field, double[] latitudes, double[] longitudes) {
+            this.heatmapField = field;
+            this.targetLatitudes = latitudes;
+            this.targetLongitudes = longitudes;
+            return this;
+        }
+
+        public Builder watch(boolean watch, long jitterMillis) {
+            this.watch = watch;
+            this.watchJitterMillis = jitterMillis;
+            return this;
+        }
+
+        /**
+         * @param timeoutMillis deadline of fetching a target
+         * @param hedging       whether a duplicate of a slow request is sent
+         */
+        public Builder timeout(long timeoutMillis, boolean hedging) {
+            this.timeoutMillis = timeoutMillis;
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder loadTest(boolean loadTest, double rate, long durationMillis) {
+            this.loadTest = loadTest;
+            this.loadTestRate = rate;
+            this.loadTestDurationMillis = durationMillis;
+            return this;
+        }
+
+        public Builder serve(boolean serve, int port) {
+            this.serve = serve;
+            this.servePort = port;
+            return this;
+        }
+
+        /**
+         * @param rules   alert rules to evaluate instead of showing measurements, empty to show measurements
+         * @param command shell command to run on alerts instead of printing them, or null
+         */
+        public Builder alerts(List<AlertRule> rules, @Nullable String command) {
+            this.alertRules = rules;
+            this.alertCommand = command;
+            return this;
+        }
+
+        /**
+         * @param recordFile traffic log to record responses to, or null
+         */
+        public Builder record(@Nullable Path recordFile) {
+            this.recordFile = recordFile;
+            return this;
+        }
+
+        /**
+         * @param replayFile traffic log to replay responses from, or null
+         * @param fast       whether responses are replayed without their recorded delays
+         */
+        public Builder replay(@Nullable Path replayFile, boolean fast) {
+            this.replayFile = replayFile;
+            this.replayFast = fast;
+            return this;
+        }
+
+        /**
+         * @param stats     whether to print the statistics on exit
+         * @param statsFile file to write the statistics to, or null
+         */
+        public Builder stats(boolean stats, @Nullable Path statsFile) {
+            this.stats = stats;
+            this.statsFile = statsFile;
+            return this;
+        }
+
+        public Arguments build() {
+            return new Arguments(this);
+        }
     }
 }
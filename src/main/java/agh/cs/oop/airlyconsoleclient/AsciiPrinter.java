@@ -2,29 +2,36 @@ package agh.cs.oop.airlyconsoleclient;
 
 import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
 import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
-import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementWithTime;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.stats.HistoryStatistics;
+import agh.cs.oop.airlyconsoleclient.stats.RunningStatistics;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.stream.DoubleStream;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.*;
-import static java.util.stream.Collectors.*;
 
 public class AsciiPrinter {
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm", Locale.UK);
     private static final DateTimeFormatter DAY_OF_WEEK_FORMATTER = DateTimeFormatter.ofPattern("EEEE", Locale.UK);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("d MMMM", Locale.UK);
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("d MMM HH:mm", Locale.UK);
 
-    private static final double PM25_NORM = 25.0;
-    private static final double PM10_NORM = 50.0;
+    /** Width used when the width of the terminal is unknown */
+    public static final int DEFAULT_WIDTH = 80;
+    /** Width of the axis labels on the left of a chart; every data column takes two more characters */
+    private static final int CHART_AXIS_WIDTH = 6;
+    /** Charts are not narrowed below this number of columns, so that the timeline labels fit */
+    private static final int MIN_CHART_COLUMNS = 24;
+    private static final int TIMELINE_MIDDLE_WIDTH = 18;
 
     private static final String ESC_RESET = "\033[0m";
 
@@ -98,35 +105,90 @@ public class AsciiPrinter {
             "      "
     };
 
-    public void print(AllMeasurements allMeasurements, Arguments arguments) {
-        // Print sensor ID or latitude & longitude
-        if (arguments.sensorId != null) {
-            out.println("Sensor ID: " + arguments.sensorId);
-        } else if (arguments.latitude != null && arguments.longitude != null) {
-            out.println(String.format(
-                    "Lat. %f° %c, Long. %f° %c",
-                    Math.abs(arguments.latitude),
-                    arguments.latitude >= 0 ? 'N' : 'S',
-                    Math.abs(arguments.longitude),
-                    arguments.longitude >= 0 ? 'E' : 'W'
-            ));
+    private final Appendable output;
+    private final int width;
+
+    public AsciiPrinter() {
+        this(out, detectWidth());
+    }
+
+    /**
+     * @param output target of {@link #print}, e.g. a {@link java.io.PrintStream} or a {@link java.io.Writer}
+     */
+    public AsciiPrinter(Appendable output) {
+        this(output, DEFAULT_WIDTH);
+    }
+
+    /**
+     * @param width number of terminal columns charts should fit in; longer histories are downsampled
+     */
+    public AsciiPrinter(Appendable output, int width) {
+        this.output = output;
+        this.width = width;
+    }
+
+    /**
+     * Returns the width of the terminal given by the COLUMNS environment variable, or {@link #DEFAULT_WIDTH}.
+     */
+    public static int detectWidth() {
+        return parseWidth(System.getenv("COLUMNS"));
+    }
+
+    /**
+     * Returns the width of the terminal given by the value of the COLUMNS environment variable,
+     * or {@link #DEFAULT_WIDTH}.
+     */
+    public static int parseWidth(@Nullable String columns) {
+        if (columns != null) {
+            try {
+                int width = Integer.parseInt(columns.trim());
+                if (width > 0) {
+                    return width;
+                }
+            } catch (NumberFormatException ignored) {
+                // Fall back to the default
+            }
+        }
+        return DEFAULT_WIDTH;
+    }
+
+    /**
+     * Prints measurements of the target to the output in a single write.
+     */
+    public void print(AllMeasurements allMeasurements, Target target, boolean history) {
+        TerminalFrame frame = new TerminalFrame();
+        boolean drawn = draw(frame, allMeasurements, target, history);
+        frame.writeTo(output);
+        if (!drawn) {
+            err.println("No results");
         }
+    }
+
+    /**
+     * Draws measurements of the target into the frame.
+     *
+     * @return false if there are no measurements to draw, and only the target has been drawn
+     */
+    public boolean draw(TerminalFrame frame, AllMeasurements allMeasurements, Target target, boolean history) {
+        // Print sensor ID or latitude & longitude
+        frame.println(target.toString());
 
         // Print current measures or history (charts)
-        if (arguments.history
-                && allMeasurements.getHistory() != null
-                && allMeasurements.getHistory().size() > 0) {
-            printHistory(allMeasurements);
-        } else if (!arguments.history
+        if (history
+                && allMeasurements.getHistoryColumns().size() > 0) {
+            printHistory(frame, allMeasurements);
+            return true;
+        } else if (!history
                 && allMeasurements.getCurrentMeasurements() != null
                 && allMeasurements.getCurrentMeasurements().getPollutionLevel() != -1) {
-            printSingleMeasurement(allMeasurements.getCurrentMeasurements(), LocalDateTime.now());
+            printSingleMeasurement(frame, allMeasurements.getCurrentMeasurements(), LocalDateTime.now());
+            return true;
         } else {
-            err.println("No results");
+            return false;
         }
     }
 
-    private void printSingleMeasurement(Measurement measurement, LocalDateTime dateTime) {
+    private void printSingleMeasurement(TerminalFrame frame, Measurement measurement, LocalDateTime dateTime) {
         String dayOfWeek = DAY_OF_WEEK_FORMATTER.format(dateTime);
         String date = DATE_FORMATTER.format(dateTime);
         String time = TIME_FORMATTER.format(dateTime);
@@ -138,8 +200,8 @@ public class AsciiPrinter {
         int pressure = (int) Math.round(measurement.getPressure() / 100.0);
         int humidity = (int) Math.round(measurement.getHumidity());
 
-        int pm25Percentage = (int) Math.round(measurement.getPm25() / PM25_NORM * 100);
-        int pm10Percentage = (int) Math.round(measurement.getPm10() / PM10_NORM * 100);
+        int pm25Percentage = (int) Math.round(measurement.getPm25() / Measurement.PM25_NORM * 100);
+        int pm10Percentage = (int) Math.round(measurement.getPm10() / Measurement.PM10_NORM * 100);
 
         String[][] caqiDigits = {BIG_DIGIT_PLACEHOLDER, BIG_DIGIT_PLACEHOLDER, BIG_DIGIT_PLACEHOLDER};
         if (caqi >= 0 && caqi <= 999) {
@@ -167,7 +229,7 @@ public class AsciiPrinter {
          * │              │       ╵  ╰────╴  ╶────╯      HUMIDITY:  100%             │
          * └──────────────┴──────────────────────────────────────────────────────────┘
          */
-        out.println(String.format("" +
+        frame.println(String.format("" +
                         "┌──────────────┬──────────────────────────────────────────────────────────┐\n" +
                         "│              │  %11$s         PM2.5:  %4$s %9$s  │\n" +
                         "│%1$s│  %12$s          PM10:  %5$s %10$s  │\n" +
@@ -193,77 +255,180 @@ public class AsciiPrinter {
         ));
     }
 
-    private void printHistory(AllMeasurements allMeasurements) {
-        LocalDateTime startDate = allMeasurements.getHistory()
-                .get(0)
-                .getFromDateTime()
-                .toInstant()
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime();
-
-        LocalDateTime endDate = allMeasurements.getHistory()
-                .get(allMeasurements.getHistory().size() - 1)
-                .getFromDateTime()
-                .toInstant()
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime()
-                .plusHours(1);
-
-        List<Measurement> measurements = allMeasurements.getHistory().stream()
-                .map(MeasurementWithTime::getMeasurements)
-                .collect(toList());
-        measurements.add(allMeasurements.getCurrentMeasurements());
+    private void printHistory(TerminalFrame frame, AllMeasurements allMeasurements) {
+        MeasurementColumns history = allMeasurements.getHistoryColumns();
+        Measurement current = allMeasurements.getCurrentMeasurements();
+
+        HistoryStatistics statistics = HistoryStatistics.of(history);
+        int columns = Math.max(MIN_CHART_COLUMNS, (width - CHART_AXIS_WIDTH) / 2);
 
         // CAQI chart
-        double[] values = measurements.stream()
-                .mapToDouble(Measurement::getAirQualityIndex)
-                .toArray();
-        double max = DoubleStream.of(values).max().orElse(100);
-        Integer[] colors = measurements.stream()
-                .mapToInt(Measurement::getPollutionLevel)
-                .mapToObj(this::getPollutionLevelColor)
-                .toArray(Integer[]::new);
-
-        printChartTitle("CAQI");
-        printChart(values, 0.0, max, 10.0, colors);
-        printChartTimeline(startDate, endDate);
-        out.println();
+        double[] values = withCurrent(history.getAirQualityIndex(), history.size(),
+                current != null ? current.getAirQualityIndex() : null);
+        int[] pollutionLevels = withCurrent(history.getPollutionLevel(), history.size(),
+                current != null ? current.getPollutionLevel() : null);
+        int[] shown = ChartDownsampler.largestTriangleThreeBuckets(values, columns);
+
+        printChartTitle(frame, "CAQI", shown.length);
+        printChart(frame, select(values, shown), 0.0,
+                chartMax(statistics.getAirQualityIndex(), current != null ? current.getAirQualityIndex() : null, 100),
+                10.0, select(pollutionLevels, shown));
+        printChartTimeline(frame, history, shown);
+        frame.println();
 
         // PM2.5 chart
-        values = measurements.stream()
-                .mapToDouble(Measurement::getPm25)
-                .toArray();
-        max = DoubleStream.of(values).max().orElse(200);
+        values = withCurrent(history.getPm25(), history.size(), current != null ? current.getPm25() : null);
+        shown = ChartDownsampler.largestTriangleThreeBuckets(values, columns);
 
-        printChartTitle("PM2.5 [μg/m³]");
-        printChart(values, 0.0, max, 10.0, null);
-        printChartTimeline(startDate, endDate);
-        out.println();
+        printChartTitle(frame, "PM2.5 [μg/m³]", shown.length);
+        printChart(frame, select(values, shown), 0.0,
+                chartMax(statistics.getPm25(), current != null ? current.getPm25() : null, 200), 10.0, null);
+        printChartTimeline(frame, history, shown);
+        frame.println();
 
         // PM10 chart
-        values = measurements.stream()
-                .mapToDouble(Measurement::getPm10)
-                .toArray();
-        max = DoubleStream.of(values).max().orElse(100);
-
-        printChartTitle("PM10 [μg/m³]");
-        printChart(values, 0.0, max, 20.0, null);
-        printChartTimeline(startDate, endDate);
+        values = withCurrent(history.getPm10(), history.size(), current != null ? current.getPm10() : null);
+        shown = ChartDownsampler.largestTriangleThreeBuckets(values, columns);
+
+        printChartTitle(frame, "PM10 [μg/m³]", shown.length);
+        printChart(frame, select(values, shown), 0.0,
+                chartMax(statistics.getPm10(), current != null ? current.getPm10() : null, 100), 20.0, null);
+        printChartTimeline(frame, history, shown);
+        frame.println();
+
+        printStatistics(frame, statistics);
     }
 
-    private void printChartTitle(String title) {
-        out.println("\033[1m" + StringUtils.center(title, 56) + ESC_RESET);
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDateTime();
     }
 
-    private void printChartTimeline(LocalDateTime startDate, LocalDateTime endDate) {
-        LocalDateTime midDate = startDate.plus(ChronoUnit.MINUTES.between(startDate, endDate) / 2, ChronoUnit.MINUTES);
-        out.println("    "
-                + StringUtils.rightPad(TIME_FORMATTER.format(startDate), 17)
-                + StringUtils.center(TIME_FORMATTER.format(midDate), 18)
-                + StringUtils.leftPad("NOW", 17));
+    /**
+     * Copies the first {@code size} values of the column, appending the current value if there is one.
+     */
+    private static double[] withCurrent(double[] column, int size, @Nullable Double current) {
+        double[] values = Arrays.copyOf(column, current != null ? size + 1 : size);
+        if (current != null) {
+            values[size] = current;
+        }
+        return values;
+    }
+
+    /**
+     * @return values at the indices, or the values themselves if all of them are selected
+     */
+    private static double[] select(double[] values, int[] indices) {
+        if (indices.length == values.length) {
+            return values;
+        }
+        double[] selected = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            selected[i] = values[indices[i]];
+        }
+        return selected;
     }
 
-    private void printChart(double[] values, double min, double max, double step, @Nullable Integer[] colors) {
+    private static int[] select(int[] values, int[] indices) {
+        if (indices.length == values.length) {
+            return values;
+        }
+        int[] selected = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            selected[i] = values[indices[i]];
+        }
+        return selected;
+    }
+
+    private static int[] withCurrent(int[] column, int size, @Nullable Integer current) {
+        int[] values = Arrays.copyOf(column, current != null ? size + 1 : size);
+        if (current != null) {
+            values[size] = current;
+        }
+        return values;
+    }
+
+    /**
+     * @return maximum of the history and the current value, or the default if there are no values
+     */
+    private static double chartMax(RunningStatistics history, @Nullable Double current, double defaultMax) {
+        double max = history.getMax();
+        if (current != null) {
+            max = Double.isNaN(max) ? current : Math.max(max, current);
+        }
+        return Double.isNaN(max) ? defaultMax : max;
+    }
+
+    private void printStatistics(TerminalFrame frame, HistoryStatistics statistics) {
+        /*
+         * Example:
+         *                     min     max    mean std dev     p50     p95 24h avg
+         * CAQI               12.0    96.3    41.2    20.5    38.0    80.1    45.3
+         * PM2.5 [μg/m³]       ...
+         */
+        StringBuilder header = new StringBuilder(StringUtils.rightPad("", 15));
+        for (String column : new String[]{"min", "max", "mean", "std dev", "p50", "p95",
+                HistoryStatistics.MOVING_AVERAGE_WINDOW + "h avg"}) {
+            header.append(StringUtils.leftPad(column, 8));
+        }
+        frame.println("\033[1m" + header + ESC_RESET);
+
+        printStatisticsRow(frame, "CAQI", statistics.getAirQualityIndex(), 1.0);
+        printStatisticsRow(frame, "PM1 [μg/m³]", statistics.getPm1(), 1.0);
+        printStatisticsRow(frame, "PM2.5 [μg/m³]", statistics.getPm25(), 1.0);
+        printStatisticsRow(frame, "PM10 [μg/m³]", statistics.getPm10(), 1.0);
+        printStatisticsRow(frame, "Temp. [°C]", statistics.getTemperature(), 1.0);
+        printStatisticsRow(frame, "Pressure [hPa]", statistics.getPressure(), 0.01);
+        printStatisticsRow(frame, "Humidity [%]", statistics.getHumidity(), 1.0);
+    }
+
+    private void printStatisticsRow(TerminalFrame frame, String name, RunningStatistics statistics, double scale) {
+        if (statistics.getCount() == 0) {
+            return;
+        }
+        frame.println(StringUtils.rightPad(name, 15)
+                + formatStatistic(statistics.getMin() * scale)
+                + formatStatistic(statistics.getMax() * scale)
+                + formatStatistic(statistics.getMean() * scale)
+                + formatStatistic(statistics.getStandardDeviation() * scale)
+                + formatStatistic(statistics.getPercentile(50) * scale)
+                + formatStatistic(statistics.getPercentile(95) * scale)
+                + formatStatistic(statistics.getMovingAverage() * scale));
+    }
+
+    private static String formatStatistic(double value) {
+        return StringUtils.leftPad(Double.isNaN(value) ? "-" : String.format(Locale.UK, "%.1f", value), 8);
+    }
+
+    private void printChartTitle(TerminalFrame frame, String title, int columns) {
+        frame.println("\033[1m" + StringUtils.center(title, CHART_AXIS_WIDTH + 2 * columns) + ESC_RESET);
+    }
+
+    /**
+     * Prints times of the first and the middle column of a chart of the history entries at the indices.
+     * The index after the last entry stands for the current measurement.
+     */
+    private void printChartTimeline(TerminalFrame frame, MeasurementColumns history, int[] shown) {
+        long[] fromTimes = history.getFromTimes();
+        long start = fromTimes[shown[0]];
+        int middleIndex = shown[shown.length / 2];
+        long middle = middleIndex < history.size()
+                ? fromTimes[middleIndex]
+                : fromTimes[history.size() - 1] + TimeUnit.HOURS.toMillis(1);
+
+        DateTimeFormatter formatter = fromTimes[history.size() - 1] - start >= TimeUnit.DAYS.toMillis(1)
+                ? DATE_TIME_FORMATTER
+                : TIME_FORMATTER;
+
+        int labelsWidth = CHART_AXIS_WIDTH + 2 * shown.length - 4;
+        int sideWidth = (labelsWidth - TIMELINE_MIDDLE_WIDTH) / 2;
+        frame.println("    "
+                + StringUtils.rightPad(formatter.format(toLocalDateTime(start)), sideWidth)
+                + StringUtils.center(formatter.format(toLocalDateTime(middle)), TIMELINE_MIDDLE_WIDTH)
+                + StringUtils.leftPad("NOW", labelsWidth - TIMELINE_MIDDLE_WIDTH - sideWidth));
+    }
+
+    private void printChart(TerminalFrame frame, double[] values, double min, double max, double step,
+                            @Nullable int[] pollutionLevels) {
         /*
          * Example:
          *  90 ┼───────────────────────────────────────────────────
@@ -280,46 +445,53 @@ public class AsciiPrinter {
 
         final String ESC_GRID_FG = "\033[38;5;238m";
 
+        String[] barFgs = new String[values.length];
+        for (int c = 0; c < values.length; c++) {
+            Integer color = pollutionLevels != null ? getPollutionLevelColor(pollutionLevels[c]) : null;
+            barFgs[c] = color != null ? "\033[38;5;" + color + "m" : "";
+        }
+
         int steps = (int) Math.ceil((max - min) / step) + 1;
 
         for (int r = 0; r < steps; r++) {
             double rval = (steps - r - 1) * step;
-            out.print(StringUtils.leftPad(Integer.toString((int) Math.round(rval)), 3));
+            frame.print(StringUtils.leftPad(Integer.toString((int) Math.round(rval)), 3));
 
             if (r == 0)
-                out.print(ESC_GRID_FG + " ┼─" + ESC_RESET);
+                frame.print(ESC_GRID_FG + " ┼─" + ESC_RESET);
             else if (r == steps - 1)
-                out.print(ESC_GRID_FG + " ┴─" + ESC_RESET);
+                frame.print(ESC_GRID_FG + " ┴─" + ESC_RESET);
             else
-                out.print(ESC_GRID_FG + " ┼─" + ESC_RESET);
+                frame.print(ESC_GRID_FG + " ┼─" + ESC_RESET);
 
             for (int c = 0; c < values.length; c++) {
                 double normalized = values[c] - min; // normalized is in range [0, 1]
 
-                final String ESC_BAR_FG = colors != null && colors[c] != null
-                        ? "\033[38;5;" + colors[c] + "m"
-                        : "";
+                final String ESC_BAR_FG = barFgs[c];
 
                 if (r == steps - 1) {
                     if (normalized >= step / 2.0)
-                        out.print(ESC_BAR_FG + "▀" + ESC_GRID_FG + "─" + ESC_RESET);
+                        frame.print(ESC_BAR_FG + "▀" + ESC_GRID_FG + "─" + ESC_RESET);
                     else
-                        out.print(ESC_GRID_FG + "──" + ESC_RESET);
+                        frame.print(ESC_GRID_FG + "──" + ESC_RESET);
                 } else {
                     if (normalized >= rval + step / 2.0)
-                        out.print(ESC_BAR_FG + "█" + ESC_GRID_FG + "─" + ESC_RESET);
+                        frame.print(ESC_BAR_FG + "█" + ESC_GRID_FG + "─" + ESC_RESET);
                     else if (normalized >= rval)
-                        out.print(ESC_BAR_FG + "▄" + ESC_GRID_FG + "─" + ESC_RESET);
+                        frame.print(ESC_BAR_FG + "▄" + ESC_GRID_FG + "─" + ESC_RESET);
                     else
-                        out.print(ESC_GRID_FG + "──" + ESC_RESET);
+                        frame.print(ESC_GRID_FG + "──" + ESC_RESET);
                 }
             }
 
-            out.println();
+            frame.println();
         }
     }
 
-    private Integer getPollutionLevelColor(int pollutionLevel) {
+    /**
+     * @return 256-color palette index of the pollution level, or null if the level is unknown
+     */
+    static @Nullable Integer getPollutionLevelColor(int pollutionLevel) {
         switch (pollutionLevel) {
             case 1:
                 return 10;
@@ -0,0 +1,68 @@
+package agh.cs.oop.airlyconsoleclient;
+
+/**
+ * Reduces a series to a given number of points for charts, preserving its visual shape, using the
+ * Largest-Triangle-Three-Buckets algorithm (S. Steinarsson, 2013).
+ * <p>
+ * The first and the last point are always kept. The other points are split into equal buckets and from each bucket
+ * the point forming the largest triangle with the point selected from the previous bucket and the average of the
+ * next bucket is kept, so peaks and dips survive where averaging would flatten them.
+ */
+class ChartDownsampler {
+
+    private ChartDownsampler() {
+    }
+
+    /**
+     * @param count number of points to keep, at least 3
+     * @return ascending indices of the kept points, or all indices if there are no more than {@code count} points
+     */
+    static int[] largestTriangleThreeBuckets(double[] values, int count) {
+        int size = values.length;
+        if (count >= size || count < 3) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[count];
+        double bucketSize = (double) (size - 2) / (count - 2);
+        int previous = 0;
+
+        for (int bucket = 0; bucket < count - 2; bucket++) {
+            // Average of the next bucket (the last point for the last bucket)
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                // Doubled area of the triangle (previous, i, average)
+                double area = Math.abs((previous - averageX) * (values[i] - values[previous])
+                        - (previous - i) * (averageY - values[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+
+            selected[bucket + 1] = chosen;
+            previous = chosen;
+        }
+
+        selected[count - 1] = size - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,298 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.ResponseCache;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident process running invocations of the application sent by the launcher script, so that they do not pay
+ * for starting a JVM, loading classes, JIT compilation and creating the HTTP client. Responses cached on disk
+ * and the connections to Airly are also kept warm between invocations.
+ * <p>
+ * The daemon listens on an ephemeral port of the loopback interface (Unix domain sockets need JDK 16, and the
+ * launcher is a bash script using /dev/tcp). The port and two random tokens are written to a file readable only
+ * by the user. The launcher sends the first token, and the daemon answers with the second one, so that the launcher
+ * does not send the API key to another process which took over the port of a daemon killed without removing
+ * the file. Exchange (UTF-8):
+ * <pre>
+ * launcher token        line, sent by the launcher
+ * daemon token          line, sent by the daemon if the launcher token is right
+ * working directory     followed by NUL, of the launcher
+ * columns               followed by NUL, COLUMNS of the launcher or empty
+ * API key               followed by NUL, API_KEY of the launcher or empty
+ * argument count        followed by NUL
+ * arguments             each followed by NUL
+ * </pre>
+ * Response, sent when the invocation ends:
+ * <pre>
+ * status                line, "OK", the exit status and the length of the errors in bytes, separated by spaces
+ * errors                standard error of the invocation
+ * output                standard output of the invocation, until the connection is closed
+ * </pre>
+ * Errors are kept apart from the output, as with 'java -jar', so that they do not get into output formats read by
+ * other programs. The response is a "LOCAL" line instead if the invocation must run in a new process: one which
+ * keeps running or registers shutdown hooks (watch, serve, load test, statistics), runs alert commands, or refers
+ * to files by paths relative to another working directory.
+ * <p>
+ * Invocations run one at a time, because the application prints to {@link System#out} and {@link System#err}.
+ */
+public class ClientDaemon {
+
+    private static final String FILE_NAME = "airly-console-client-daemon";
+    private static final int BACKLOG = 64;
+    private static final int TOKEN_BYTES = 32;
+    /** Maximum time to receive a request, so that a stalled launcher does not block the others */
+    private static final int REQUEST_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+    private static final int MAX_REQUEST_FIELD = 64 * 1024;
+    private static final int MAX_ARGUMENTS = 4096;
+
+    private static final List<String> RESIDENT_UNSUPPORTED_OPTIONS = Arrays.asList(
+            "daemon", "watch", "serve", "load-test", "stats", "stats-file", "alert-exec");
+    private static final List<String> FILE_OPTIONS = Arrays.asList(
+            "input-file", "sensors-file", "record", "replay", "archive", "export-archive");
+
+    /** Fetches a sensor from a closed port, which goes through most of the code of an invocation */
+    private static final String[] WARM_UP_ARGUMENTS = {"--api-key", "warm-up", "--sensor-id", "1",
+            "--base-url", "http://127.0.0.1:9/", "--no-cache", "--no-store", "--timeout", "1"};
+
+    private final ServerSocket server;
+    private final String launcherToken;
+    private final String daemonToken;
+    private final String workingDirectory = Paths.get("").toAbsolutePath().toString();
+
+    private ClientDaemon(ServerSocket server, String launcherToken, String daemonToken) {
+        this.server = server;
+        this.launcherToken = launcherToken;
+        this.daemonToken = daemonToken;
+    }
+
+    /**
+     * Returns the file with the port and the token of the daemon:
+     * '$XDG_RUNTIME_DIR/airly-console-client-daemon' or '~/.cache/airly-console-client-daemon'.
+     */
+    public static Path defaultFile() {
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        return runtimeDir != null && !runtimeDir.isEmpty()
+                ? Paths.get(runtimeDir, FILE_NAME)
+                : ResponseCache.defaultDirectory().resolveSibling(FILE_NAME);
+    }
+
+    /**
+     * Opens the server socket and publishes its port and new tokens in the file, replacing a previous daemon.
+     * The file is removed when the process ends.
+     */
+    public static ClientDaemon start(Path file) throws IOException {
+        SecureRandom random = new SecureRandom();
+        String launcherToken = createToken(random);
+        String daemonToken = createToken(random);
+
+        ServerSocket server = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+        String contents = server.getLocalPort() + "\n" + launcherToken + "\n" + daemonToken + "\n";
+        try {
+            // A new temporary file is readable only by its owner
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.write(tempFile, contents.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                // Unless it has been replaced by another daemon
+                if (new String(Files.readAllBytes(file), StandardCharsets.UTF_8).equals(contents)) {
+                    Files.delete(file);
+                }
+            } catch (IOException ignored) {
+            }
+        }));
+        return new ClientDaemon(server, launcherToken, daemonToken);
+    }
+
+    private static String createToken(SecureRandom random) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * Warms up the application and runs invocations until the process is terminated.
+     */
+    public void run() {
+        PrintStream discarded = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        runRedirected(WARM_UP_ARGUMENTS, discarded, discarded);
+
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                serve(socket);
+            } catch (IOException e) {
+                // The launcher has gone away or sent an invalid request; it runs the invocation on its own
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+        socket.setTcpNoDelay(true);
+        InputStream input = new BufferedInputStream(socket.getInputStream());
+        OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+        if (!MessageDigest.isEqual(readField(input, '\n'), launcherToken.getBytes(StandardCharsets.UTF_8))) {
+            return;
+        }
+        output.write((daemonToken + "\n").getBytes(StandardCharsets.UTF_8));
+        output.flush();
+
+        String directory = readString(input, '\0');
+        String columns = readString(input, '\0');
+        String apiKey = readString(input, '\0');
+        int count;
+        try {
+            count = Integer.parseInt(readString(input, '\0'));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            return;
+        }
+        List<String> args = new ArrayList<>(count + 2);
+        for (int i = 0; i < count; i++) {
+            args.add(readString(input, '\0'));
+        }
+        socket.setSoTimeout(0);
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(Application.COMMAND_OPTIONS, args.toArray(new String[0]));
+        } catch (ParseException e) {
+            // Reported by the invocation
+            cmd = null;
+        }
+
+        if (cmd != null && !isResidentSupported(cmd, directory)) {
+            output.write("LOCAL\n".getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            return;
+        }
+        // The environment of the daemon is not the one of the launcher
+        if (!apiKey.isEmpty() && (cmd == null || !cmd.hasOption("api-key"))) {
+            args.add(0, "--api-key");
+            args.add(1, apiKey);
+        }
+        if (cmd == null || !cmd.hasOption("width")) {
+            args.add(0, "--width");
+            args.add(1, Integer.toString(AsciiPrinter.parseWidth(columns.isEmpty() ? null : columns)));
+        }
+
+        // The exit status and the errors precede the output
+        ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(outBuffer, false, StandardCharsets.UTF_8.name());
+        PrintStream errStream = new PrintStream(errBuffer, false, StandardCharsets.UTF_8.name());
+        int status = runRedirected(args.toArray(new String[0]), outStream, errStream);
+        outStream.flush();
+        errStream.flush();
+        output.write(("OK " + status + " " + errBuffer.size() + "\n").getBytes(StandardCharsets.UTF_8));
+        errBuffer.writeTo(output);
+        outBuffer.writeTo(output);
+        output.flush();
+    }
+
+    /**
+     * Runs an invocation of the application with the standard streams redirected to the streams.
+     *
+     * @return exit status of the invocation
+     */
+    private static int runRedirected(String[] args, PrintStream outStream, PrintStream errStream) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(outStream);
+        System.setErr(errStream);
+        try {
+            return Application.run(args, outStream);
+        } catch (RuntimeException e) {
+            errStream.println(e);
+            return 1;
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+
+    private boolean isResidentSupported(CommandLine cmd, String directory) {
+        for (String option : RESIDENT_UNSUPPORTED_OPTIONS) {
+            if (cmd.hasOption(option)) {
+                return false;
+            }
+        }
+        if (!directory.equals(workingDirectory)) {
+            for (String option : FILE_OPTIONS) {
+                String path = cmd.getOptionValue(option);
+                if (path != null && !Paths.get(path).isAbsolute()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String readString(InputStream input, char terminator) throws IOException {
+        return new String(readField(input, terminator), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readField(InputStream input, char terminator) throws IOException {
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+        while (true) {
+            int b = input.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            if (b == terminator) {
+                return field.toByteArray();
+            }
+            if (field.size() == MAX_REQUEST_FIELD) {
+                throw new IOException("Too long field of a request");
+            }
+            field.write(b);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.lang.System.*;
+
+/**
+ * Lays out results of many targets as tiles in a grid sized to the terminal.
+ * <p>
+ * Every tile is drawn into its own {@link TerminalFrame} in parallel, then the tiles are copied into a single
+ * frame, which is written out at once. Tiles in a row of the grid are aligned to the top, rows are as high
+ * as their highest tile.
+ */
+public class Dashboard {
+
+    /** Width of the current measurement panel */
+    private static final int PANEL_TILE_WIDTH = 75;
+    /** Width of the charts of a day of history and of the statistics table below them */
+    private static final int HISTORY_TILE_WIDTH = 72;
+    private static final int GAP = 2;
+
+    private final AsciiPrinter printer;
+    private final int tileWidth;
+    private final int columns;
+    private final boolean history;
+
+    /**
+     * @param width number of terminal columns
+     */
+    public Dashboard(int width, boolean history) {
+        this.history = history;
+        this.tileWidth = history ? HISTORY_TILE_WIDTH : PANEL_TILE_WIDTH;
+        this.columns = Math.max(1, (width + GAP) / (tileWidth + GAP));
+        this.printer = new AsciiPrinter(out, tileWidth);
+    }
+
+    /**
+     * Draws the results of the targets; a missing result is shown as waiting for data.
+     *
+     * @param results results in the order of the targets, null if not available yet
+     */
+    public TerminalFrame draw(List<Target> targets, List<FetchResult> results) {
+        TerminalFrame[] tiles = IntStream.range(0, targets.size())
+                .parallel()
+                .mapToObj(i -> drawTile(targets.get(i), results.get(i)))
+                .toArray(TerminalFrame[]::new);
+
+        TerminalFrame frame = new TerminalFrame();
+        int top = 0;
+        for (int first = 0; first < tiles.length; first += columns) {
+            int height = 0;
+            for (int i = first; i < Math.min(first + columns, tiles.length); i++) {
+                frame.draw(tiles[i], top, (i - first) * (tileWidth + GAP));
+                height = Math.max(height, tiles[i].getHeight());
+            }
+            top += height + 1;
+        }
+        return frame;
+    }
+
+    private TerminalFrame drawTile(Target target, @Nullable FetchResult result) {
+        TerminalFrame tile = new TerminalFrame();
+        if (result == null) {
+            tile.println(target.toString());
+            tile.println("Waiting for data...");
+        } else if (result.isSuccessful()) {
+            //noinspection ConstantConditions
+            if (!printer.draw(tile, result.measurements, result.target, history)) {
+                tile.println("No results");
+            }
+        } else {
+            tile.println(result.target.toString());
+            tile.println(StringUtils.abbreviate(result.errorMessage, tileWidth));
+        }
+        return tile;
+    }
+}
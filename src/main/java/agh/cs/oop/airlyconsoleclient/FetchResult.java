@@ -0,0 +1,38 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Outcome of fetching measurements of a single {@link Target}: either measurements or an error message.
+ */
+public class FetchResult {
+    public final Target target;
+    public final @Nullable AllMeasurements measurements;
+    public final @Nullable String errorMessage;
+
+    private FetchResult(Target target, @Nullable AllMeasurements measurements, @Nullable String errorMessage) {
+        this.target = target;
+        this.measurements = measurements;
+        this.errorMessage = errorMessage;
+    }
+
+    public static FetchResult success(Target target, AllMeasurements measurements) {
+        return new FetchResult(target, measurements, null);
+    }
+
+    public static FetchResult failure(Target target, String errorMessage) {
+        return new FetchResult(target, null, errorMessage);
+    }
+
+    /**
+     * Returns the same outcome attributed to another target.
+     */
+    public FetchResult withTarget(Target target) {
+        return new FetchResult(target, measurements, errorMessage);
+    }
+
+    public boolean isSuccessful() {
+        return measurements != null;
+    }
+}
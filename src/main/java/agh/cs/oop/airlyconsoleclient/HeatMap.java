@@ -0,0 +1,272 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.geo.SensorIndex;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Map of a current measurement interpolated between targets with known locations, colored by pollution level.
+ * <p>
+ * The map covers the bounding box of the targets. The value of a pixel is the inverse distance weighted average
+ * (with power 2) of the measured values, in a local equirectangular projection. The grid is computed tile by tile
+ * in parallel on the common fork-join pool. Every terminal cell shows two pixels as a half block: the upper one
+ * as the foreground color of '▀' and the lower one as the background, so pixels are about square.
+ */
+public class HeatMap {
+
+    public enum Field {
+        CAQI("CAQI", 25, 50, 75, 100, 125),
+        /** PM2.5 in μg/m³, with the levels of the CAQI grid */
+        PM25("PM2.5", 15, 30, 55, 110, 165);
+
+        private final String label;
+        /** Lowest values of pollution levels 2 to 6 */
+        private final double[] limits;
+
+        Field(String label, double... limits) {
+            this.label = label;
+            this.limits = limits;
+        }
+
+        /**
+         * @return the field named 'caqi' or 'pm25', or null
+         */
+        public static @Nullable Field parse(String name) {
+            for (Field field : values()) {
+                if (field.name().equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        double get(Measurement measurement) {
+            return this == CAQI ? measurement.getAirQualityIndex() : measurement.getPm25();
+        }
+
+        int getPollutionLevel(double value) {
+            int level = 1;
+            while (level <= limits.length && value >= limits[level - 1]) {
+                level++;
+            }
+            return level;
+        }
+    }
+
+    private static final String ESC_RESET = "\033[0m";
+    /** Size of a square of pixels computed as one task */
+    private static final int TILE_SIZE = 32;
+    private static final int MAX_HEIGHT = 80;
+    /** Margin around the targets as a fraction of the longer side of their bounding box */
+    private static final double MARGIN = 0.05;
+    /** Minimum size of a side of the map in meters */
+    private static final double MIN_EXTENT = 1000;
+    private static final double METERS_PER_DEGREE = Math.toRadians(SensorIndex.EARTH_RADIUS);
+
+    private final Field field;
+    private final int width;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /**
+     * @param width      maximum width of the map in terminal columns
+     * @param latitudes  locations of the targets, NaN if unknown
+     * @param longitudes as above
+     */
+    public HeatMap(Field field, int width, double[] latitudes, double[] longitudes) {
+        this.field = field;
+        this.width = Math.max(1, width);
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    /**
+     * Draws the map of the current measurements of the targets followed by a legend.
+     *
+     * @param results results in the order of the targets, null if not available yet
+     */
+    public TerminalFrame draw(List<Target> targets, List<FetchResult> results) {
+        double[] sampleLatitudes = new double[targets.size()];
+        double[] sampleLongitudes = new double[targets.size()];
+        double[] sampleValues = new double[targets.size()];
+        int count = 0;
+        boolean waiting = false;
+        for (int i = 0; i < targets.size(); i++) {
+            FetchResult result = results.get(i);
+            waiting |= result == null;
+            Measurement current = result != null && result.measurements != null
+                    ? result.measurements.getCurrentMeasurements() : null;
+            // Missing values are decoded as zeros, so a sensor without data would look like clean air
+            if (current == null || current.getPollutionLevel() < 0 || Double.isNaN(latitudes[i])) {
+                continue;
+            }
+            sampleLatitudes[count] = latitudes[i];
+            sampleLongitudes[count] = longitudes[i];
+            sampleValues[count] = field.get(current);
+            count++;
+        }
+
+        TerminalFrame frame = new TerminalFrame();
+        if (count == 0) {
+            frame.println(waiting ? "Waiting for data..." : "No " + field.label + " of targets with known locations");
+            return frame;
+        }
+
+        // Project the samples onto a plane in meters, x to the east and y to the south of the center
+        double north = Double.NEGATIVE_INFINITY;
+        double south = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        double west = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            north = Math.max(north, sampleLatitudes[i]);
+            south = Math.min(south, sampleLatitudes[i]);
+            east = Math.max(east, sampleLongitudes[i]);
+            west = Math.min(west, sampleLongitudes[i]);
+        }
+        double centerLatitude = (north + south) / 2;
+        double centerLongitude = (east + west) / 2;
+        double scaleX = METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLatitude));
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = (sampleLongitudes[i] - centerLongitude) * scaleX;
+            ys[i] = (centerLatitude - sampleLatitudes[i]) * METERS_PER_DEGREE;
+        }
+
+        double extentX = Math.max((east - west) * scaleX, MIN_EXTENT);
+        double extentY = Math.max((north - south) * METERS_PER_DEGREE, MIN_EXTENT);
+        double margin = MARGIN * Math.max(extentX, extentY);
+        extentX += 2 * margin;
+        extentY += 2 * margin;
+
+        int columns = width;
+        double pixelSize = extentX / columns;
+        int rows = (int) Math.ceil(extentY / pixelSize / 2) * 2;
+        if (rows > MAX_HEIGHT) {
+            rows = MAX_HEIGHT;
+            pixelSize = extentY / rows;
+            columns = Math.max(1, (int) Math.round(extentX / pixelSize));
+        }
+        double left = -columns * pixelSize / 2;
+        double top = -rows * pixelSize / 2;
+
+        double[] grid = interpolate(xs, ys, sampleValues, count, left, top, pixelSize, columns, rows);
+        drawGrid(frame, grid, columns, rows);
+        drawLegend(frame, grid, count, north, south, east, west, columns * pixelSize, rows * pixelSize);
+        return frame;
+    }
+
+    /**
+     * Computes the inverse distance weighted average of the samples at the centers of the pixels of a grid.
+     *
+     * @param xs        coordinates of the samples in meters, x to the right and y down
+     * @param count     number of samples in the arrays
+     * @param left      coordinate of the left edge of the grid
+     * @param top       coordinate of the top edge of the grid
+     * @param pixelSize size of a side of a pixel in meters
+     * @return values of the pixels, row by row from the top left corner
+     */
+    public static double[] interpolate(double[] xs, double[] ys, double[] values, int count,
+                                       double left, double top, double pixelSize, int columns, int rows) {
+        double[] grid = new double[columns * rows];
+        int tileColumns = (columns + TILE_SIZE - 1) / TILE_SIZE;
+        int tileRows = (rows + TILE_SIZE - 1) / TILE_SIZE;
+
+        IntStream.range(0, tileColumns * tileRows).parallel().forEach(tile -> {
+            int firstRow = tile / tileColumns * TILE_SIZE;
+            int firstColumn = tile % tileColumns * TILE_SIZE;
+            for (int row = firstRow; row < Math.min(firstRow + TILE_SIZE, rows); row++) {
+                double y = top + (row + 0.5) * pixelSize;
+                for (int column = firstColumn; column < Math.min(firstColumn + TILE_SIZE, columns); column++) {
+                    double x = left + (column + 0.5) * pixelSize;
+                    grid[row * columns + column] = interpolate(xs, ys, values, count, x, y);
+                }
+            }
+        });
+        return grid;
+    }
+
+    private static double interpolate(double[] xs, double[] ys, double[] values, int count, double x, double y) {
+        double weightSum = 0;
+        double valueSum = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            double squaredDistance = dx * dx + dy * dy;
+            if (squaredDistance == 0) {
+                return values[i];
+            }
+            double weight = 1 / squaredDistance;
+            weightSum += weight;
+            valueSum += weight * values[i];
+        }
+        return valueSum / weightSum;
+    }
+
+    private void drawGrid(TerminalFrame frame, double[] grid, int columns, int rows) {
+        StringBuilder line = new StringBuilder(columns * 24);
+        for (int row = 0; row < rows; row += 2) {
+            line.setLength(0);
+            int shownUpper = -1;
+            int shownLower = -1;
+            for (int column = 0; column < columns; column++) {
+                int upper = getColor(grid[row * columns + column]);
+                int lower = getColor(grid[(row + 1) * columns + column]);
+                if (upper != shownUpper) {
+                    line.append("\033[38;5;").append(upper).append('m');
+                    shownUpper = upper;
+                }
+                if (lower != shownLower) {
+                    line.append("\033[48;5;").append(lower).append('m');
+                    shownLower = lower;
+                }
+                line.append('▀');
+            }
+            frame.println(line.append(ESC_RESET));
+        }
+    }
+
+    private void drawLegend(TerminalFrame frame, double[] grid, int count, double north, double south,
+                            double east, double west, double widthMeters, double heightMeters) {
+        frame.println(String.format(Locale.ROOT,
+                "%s interpolated between %d targets, %.4f°N %.4f°E – %.4f°N %.4f°E, %.1f × %.1f km",
+                field.label, count, north, west, south, east, widthMeters / 1000, heightMeters / 1000));
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : grid) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        StringBuilder legend = new StringBuilder();
+        for (int level = 1; level <= field.limits.length + 1; level++) {
+            legend.append("\033[38;5;").append(AsciiPrinter.getPollutionLevelColor(level)).append("m██")
+                    .append(ESC_RESET).append(' ');
+            if (level == 1) {
+                legend.append("<").append(formatLimit(field.limits[0]));
+            } else if (level > field.limits.length) {
+                legend.append("≥").append(formatLimit(field.limits[level - 2]));
+            } else {
+                legend.append(formatLimit(field.limits[level - 2])).append('–')
+                        .append(formatLimit(field.limits[level - 1]));
+            }
+            legend.append("  ");
+        }
+        legend.append(String.format(Locale.ROOT, "min %.0f, max %.0f", min, max));
+        frame.println(legend);
+    }
+
+    private int getColor(double value) {
+        //noinspection ConstantConditions
+        return AsciiPrinter.getPollutionLevelColor(field.getPollutionLevel(value));
+    }
+
+    private static String formatLimit(double limit) {
+        return String.format(Locale.ROOT, "%.0f", limit);
+    }
+}
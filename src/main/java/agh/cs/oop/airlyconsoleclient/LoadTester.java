@@ -0,0 +1,234 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApi;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApiFactory;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurementsDecoder;
+import agh.cs.oop.airlyconsoleclient.airlyapi.RateLimiter;
+import agh.cs.oop.airlyconsoleclient.metrics.LatencyHistogram;
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests for the targets at a constant rate from a pool of workers and reports where the time goes.
+ * <p>
+ * Requests are scheduled at fixed points in time (open model): if the server is slow, requests queue up
+ * instead of being sent less often, and the latency is measured from the scheduled time, so that queueing
+ * is not hidden from the results.
+ */
+public class LoadTester {
+
+    private final AirlyApi api;
+    private final String apiKey;
+    private final List<Target> targets;
+    private final double rate;
+    private final int workers;
+    private final long durationNanos;
+
+    private final AllMeasurementsDecoder decoder = new AllMeasurementsDecoder();
+    private final ThreadLocal<PhaseTimes> phaseTimes = ThreadLocal.withInitial(PhaseTimes::new);
+
+    /** Timers of the phases, reported in this order */
+    private final Metrics metrics = new Metrics();
+    /** Only of new connections */
+    private final LatencyHistogram connect = metrics.timer("connect");
+    private final LatencyHistogram timeToFirstByte = metrics.timer("time_to_first_byte");
+    private final LatencyHistogram transfer = metrics.timer("body_transfer");
+    private final LatencyHistogram decode = metrics.timer("decode");
+    private final LatencyHistogram serviceTime = metrics.timer("service_time");
+    /** Including the time spent in the queue */
+    private final LatencyHistogram latency = metrics.timer("latency");
+    private final AtomicLong nextRequest = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final Map<String, AtomicLong> outcomes = new TreeMap<>();
+
+    /**
+     * @param factory factory configured with the tested server; the cache should be disabled
+     * @param rate    requests per second
+     */
+    public LoadTester(AirlyApiFactory factory, String apiKey, List<Target> targets,
+                      double rate, int workers, long durationNanos) {
+        this.api = factory.setEventListenerFactory(call -> new PhaseListener()).createAirlyApi();
+        this.apiKey = apiKey;
+        this.targets = targets;
+        this.rate = rate;
+        this.workers = workers;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Runs the test and prints the report.
+     */
+    public void run(PrintStream output) throws InterruptedException {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(() -> work(start, intervalNanos), "load-tester-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        printReport(output, elapsed);
+    }
+
+    private void work(long start, long intervalNanos) {
+        while (true) {
+            long index = nextRequest.getAndIncrement();
+            long scheduled = start + index * intervalNanos;
+            if (scheduled - start >= durationNanos) {
+                return;
+            }
+
+            long delay;
+            while ((delay = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            execute(targets.get((int) (index % targets.size())), scheduled);
+        }
+    }
+
+    private void execute(Target target, long scheduled) {
+        PhaseTimes times = phaseTimes.get();
+        times.reset();
+
+        long begin = System.nanoTime();
+        String outcome;
+        try {
+            Response<ResponseBody> response = prepareCall(target).execute();
+
+            ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+            byte[] bytes = body != null ? body.bytes() : new byte[0];
+            long received = System.nanoTime();
+            bytesReceived.addAndGet(bytes.length);
+
+            if (response.isSuccessful()) {
+                decoder.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+                decode.record(System.nanoTime() - received);
+            }
+
+            if (times.connectNanos > 0) {
+                connect.record(times.connectNanos);
+            }
+            if (times.responseHeadersStart > 0) {
+                timeToFirstByte.record(times.responseHeadersStart - times.callStart);
+                transfer.record(received - times.responseHeadersStart);
+            }
+            outcome = "HTTP " + response.code();
+        } catch (Exception e) {
+            outcome = e.getClass().getSimpleName();
+        }
+
+        long end = System.nanoTime();
+        serviceTime.record(end - begin);
+        latency.record(end - scheduled);
+        countOutcome(outcome);
+    }
+
+    private retrofit2.Call<ResponseBody> prepareCall(Target target) {
+        if (target.sensorId != null) {
+            return api.rawSensorMeasurements(apiKey, RateLimiter.Priority.INTERACTIVE, target.sensorId);
+        } else {
+            //noinspection ConstantConditions
+            return api.rawMapPointMeasurements(apiKey, RateLimiter.Priority.INTERACTIVE,
+                    target.latitude, target.longitude);
+        }
+    }
+
+    private void countOutcome(String outcome) {
+        synchronized (outcomes) {
+            outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private void printReport(PrintStream output, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = latency.getCount();
+
+        output.println(String.format(Locale.ROOT,
+                "Requests: %d in %.1f s (%.1f req/s, target %.1f req/s, %d workers)",
+                requests, seconds, requests / seconds, rate, workers));
+        output.println(String.format(Locale.ROOT, "Received: %d bytes (%.1f kB/s)", bytesReceived.get(),
+                bytesReceived.get() / seconds / 1024));
+        synchronized (outcomes) {
+            outcomes.forEach((outcome, count) -> output.println("  " + outcome + ": " + count));
+        }
+        output.println();
+
+        StringBuilder table = new StringBuilder();
+        try {
+            metrics.writeText(table);
+        } catch (IOException ignored) {
+            // StringBuilder does not throw
+        }
+        output.print(table);
+    }
+
+    /**
+     * Times of events of the call executed by the current thread, in {@link System#nanoTime()}.
+     */
+    private static class PhaseTimes {
+        long callStart;
+        long connectStart;
+        long connectNanos;
+        long responseHeadersStart;
+
+        void reset() {
+            callStart = 0;
+            connectStart = 0;
+            connectNanos = 0;
+            responseHeadersStart = 0;
+        }
+    }
+
+    /**
+     * Records events of synchronous calls, which are delivered on the thread executing the call.
+     */
+    private class PhaseListener extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            phaseTimes.get().callStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            phaseTimes.get().connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            PhaseTimes times = phaseTimes.get();
+            times.connectNanos += System.nanoTime() - times.connectStart;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            phaseTimes.get().responseHeadersStart = System.nanoTime();
+        }
+    }
+}
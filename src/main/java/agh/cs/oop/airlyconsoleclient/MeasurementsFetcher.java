@@ -0,0 +1,361 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApi;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.RateLimiter;
+import agh.cs.oop.airlyconsoleclient.geo.Geohash;
+import agh.cs.oop.airlyconsoleclient.geo.MapPointIndex;
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import agh.cs.oop.airlyconsoleclient.stats.RunningStatistics;
+import agh.cs.oop.airlyconsoleclient.store.HistoryStore;
+import org.jetbrains.annotations.Nullable;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches measurements of many targets using a single {@link AirlyApi} instance.
+ * At most {@code concurrency} targets are fetched at the same time.
+ * Fetched history is appended to the {@link HistoryStore}, if one is given.
+ * <p>
+ * Calls are asynchronous: responses are decoded by the threads of the HTTP client as they arrive, so results
+ * can be rendered while other requests are still in flight, and no thread waits for a response.
+ * <p>
+ * Each target has a deadline, after which it fails. With hedging, if the response takes longer than 95% of
+ * the responses observed so far, a duplicate request is sent and the first successful answer is used; the other
+ * call is canceled. Only one duplicate is sent per target, so hedging adds about 5% of requests, and only while
+ * the {@link RateLimiter} has spare tokens: a response delayed by throttling would not come sooner
+ * to a duplicate.
+ * <p>
+ * Requests for a target which is already being fetched are coalesced: they share the result of the request
+ * in flight instead of sending another one.
+ * <p>
+ * Map points are snapped to a geohash grid: points in the same cell are fetched as the center of the cell,
+ * and recent results of cells are kept in a {@link MapPointIndex}, so nearby points share a single request.
+ */
+public class MeasurementsFetcher implements AutoCloseable {
+
+    /** Responses observed before their 95th percentile is used as the hedging delay */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    /** Hedging delay until enough responses are observed */
+    private static final long INITIAL_HEDGE_DELAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+    /** Lower bound of the hedging delay, so that ordinary responses are not duplicated after a run of fast ones */
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final AirlyApi api;
+    private final String apiKey;
+    private final int concurrency;
+    private final @Nullable HistoryStore store;
+    private final int gridPrecision;
+    private final long timeoutMillis;
+    private final @Nullable RateLimiter hedgingLimiter;
+    private final @Nullable Metrics metrics;
+    private final MapPointIndex mapPointIndex = new MapPointIndex();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, CompletableFuture<FetchResult>> inFlight = new ConcurrentHashMap<>();
+    /** Times from sending requests to receiving responses, without waiting for the rate limiter, in nanoseconds */
+    private final RunningStatistics latencies = new RunningStatistics(1);
+
+    /** Exchanges waiting for one of the running ones to complete, guarded by itself */
+    private final Queue<Exchange> waiting = new ArrayDeque<>();
+    private int running;
+
+    /**
+     * @param gridPrecision length of geohashes of grid cells, 0 to fetch map points at their exact coordinates
+     * @param timeoutMillis  deadline of fetching a target
+     * @param hedgingLimiter rate limiter of the API, which must have spare tokens for a slow request to be
+     *                       duplicated, or null to disable hedging
+     * @param metrics        metrics to count duplicated requests in, or null
+     */
+    public MeasurementsFetcher(AirlyApi api, String apiKey, int concurrency, @Nullable HistoryStore store,
+                               int gridPrecision, long timeoutMillis, @Nullable RateLimiter hedgingLimiter,
+                               @Nullable Metrics metrics) {
+        this.api = api;
+        this.apiKey = apiKey;
+        this.concurrency = concurrency;
+        this.store = store;
+        this.gridPrecision = gridPrecision;
+        this.timeoutMillis = timeoutMillis;
+        this.hedgingLimiter = hedgingLimiter;
+        this.metrics = metrics;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "measurements-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts fetching all the targets, with {@link RateLimiter.Priority#INTERACTIVE} priority. Returned futures are in the same order as the targets
+     * and never complete exceptionally - a failure is reported as a {@link FetchResult}.
+     */
+    public List<CompletableFuture<FetchResult>> fetchAll(List<Target> targets) {
+        List<CompletableFuture<FetchResult>> results = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            results.add(fetchAsync(target, RateLimiter.Priority.INTERACTIVE));
+        }
+        return results;
+    }
+
+    /**
+     * Starts fetching the target, unless it is already being fetched. Returned future never completes exceptionally.
+     *
+     * @param priority priority of the request waiting for the rate limit. A request already in flight for the target
+     *                 is shared whatever its priority.
+     */
+    public CompletableFuture<FetchResult> fetchAsync(Target target, RateLimiter.Priority priority) {
+        Target query = target.snapToGrid(gridPrecision);
+        String cell = null;
+        if (query != target) {
+            //noinspection ConstantConditions
+            cell = Geohash.encode(target.latitude, target.longitude, gridPrecision);
+            AllMeasurements measurements = mapPointIndex.get(cell);
+            if (measurements != null) {
+                return CompletableFuture.completedFuture(FetchResult.success(target, measurements));
+            }
+        }
+
+        String finalCell = cell;
+        String key = query.getKey();
+        CompletableFuture<FetchResult> future = inFlight.computeIfAbsent(key, k ->
+                submit(query, priority).thenApply(result -> {
+                    if (finalCell != null && result.isSuccessful()) {
+                        //noinspection ConstantConditions
+                        mapPointIndex.put(finalCell, result.measurements);
+                    }
+                    return result;
+                }));
+        // Registered after the future is put in the map, so it is removed even if it has already completed
+        future.whenComplete((result, e) -> inFlight.remove(key, future));
+        return future.thenApply(result -> result.withTarget(target));
+    }
+
+    /**
+     * Starts the exchange of the target now, or once fewer than {@code concurrency} exchanges are running.
+     */
+    private CompletableFuture<FetchResult> submit(Target target, RateLimiter.Priority priority) {
+        Exchange exchange = new Exchange(target, priority);
+        exchange.result.whenComplete((result, e) -> startNext());
+        synchronized (waiting) {
+            if (running == concurrency) {
+                waiting.add(exchange);
+                return exchange.result;
+            }
+            running++;
+        }
+        exchange.start();
+        return exchange.result;
+    }
+
+    private void startNext() {
+        Exchange next;
+        synchronized (waiting) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        next.start();
+    }
+
+    private long hedgeDelayNanos() {
+        synchronized (latencies) {
+            if (latencies.getCount() < MIN_LATENCY_SAMPLES) {
+                return INITIAL_HEDGE_DELAY_NANOS;
+            }
+            return Math.max(MIN_HEDGE_DELAY_NANOS, (long) latencies.getPercentile(95));
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies.add(nanos);
+        }
+    }
+
+    private Call<AllMeasurements> prepareCall(Target target, RateLimiter.Priority priority) {
+        if (target.sensorId != null) {
+            return api.sensorMeasurements(apiKey, priority, target.sensorId);
+        } else {
+            //noinspection ConstantConditions
+            return api.mapPointMeasurements(apiKey, priority, target.latitude, target.longitude);
+        }
+    }
+
+    private FetchResult toResult(Target target, Response<AllMeasurements> response) {
+        if (!response.isSuccessful()) {
+            String prefix = response.code() == 401 || response.code() == 403 ? "Invalid API Key: "
+                    : response.code() == 429 ? "Rate limit exceeded: "
+                    : "";
+            return FetchResult.failure(target,
+                    prefix + String.format("Server returned: %d %s", response.code(), response.message()));
+        }
+
+        AllMeasurements measurements = response.body();
+
+        if (measurements == null
+                || measurements.getCurrentMeasurements() == null
+                || measurements.getCurrentMeasurements().getPollutionLevel() == -1) {
+            return FetchResult.failure(target, "No results found");
+        }
+
+        return FetchResult.success(target, measurements);
+    }
+
+    private static FetchResult toResult(Target target, Throwable t) {
+        if (t instanceof IOException) {
+            return FetchResult.failure(target, "Failed to connect to the server: " + t.getMessage());
+        } else {
+            return FetchResult.failure(target,
+                    "An unexpected error occurred during creating the request or decoding the response");
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Fetching of a single target: the call, possibly its duplicate, and the timers of the hedging and the deadline.
+     */
+    private class Exchange implements Callback<AllMeasurements> {
+        final Target target;
+        final RateLimiter.Priority priority;
+        final CompletableFuture<FetchResult> result = new CompletableFuture<>();
+        private final List<Call<AllMeasurements>> calls = new ArrayList<>(2);
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>(2);
+        private int pendingCalls;
+        private boolean done;
+
+        Exchange(Target target, RateLimiter.Priority priority) {
+            this.target = target;
+            this.priority = priority;
+        }
+
+        synchronized void start() {
+            send();
+            if (done) {
+                return;
+            }
+            timers.add(scheduler.schedule(this::timeOut, timeoutMillis, TimeUnit.MILLISECONDS));
+            if (hedgingLimiter != null) {
+                timers.add(scheduler.schedule(this::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS));
+            }
+        }
+
+        private synchronized void send() {
+            Call<AllMeasurements> call;
+            try {
+                call = prepareCall(target, priority);
+            } catch (RuntimeException e) {
+                if (pendingCalls == 0) {
+                    complete(toResult(target, e));
+                }
+                return;
+            }
+            calls.add(call);
+            pendingCalls++;
+            call.enqueue(this);
+        }
+
+        private synchronized void hedge() {
+            //noinspection ConstantConditions
+            if (done || !hedgingLimiter.hasSpareTokens()) {
+                return;
+            }
+            if (metrics != null) {
+                metrics.increment("hedged_requests", 1);
+            }
+            send();
+        }
+
+        private void timeOut() {
+            complete(FetchResult.failure(target, "No response within " + timeoutMillis / 1000.0 + " s"));
+        }
+
+        @Override
+        public void onResponse(Call<AllMeasurements> call, Response<AllMeasurements> response) {
+            FetchResult fetched = toResult(target, response);
+            // Only responses from the network, not the ones from the cache or a replayed log, tell the latency
+            okhttp3.Response raw = response.raw();
+            if (fetched.isSuccessful() && raw.networkResponse() != null) {
+                long latencyMillis = raw.receivedResponseAtMillis() - raw.sentRequestAtMillis();
+                recordLatency(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            }
+            finish(call, fetched);
+        }
+
+        @Override
+        public void onFailure(Call<AllMeasurements> call, Throwable t) {
+            finish(call, toResult(target, t));
+        }
+
+        /**
+         * Completes the exchange with a successful result, or with a failure once no other call can succeed.
+         */
+        private void finish(Call<AllMeasurements> call, FetchResult fetched) {
+            synchronized (this) {
+                pendingCalls--;
+                if (done || (!fetched.isSuccessful() && pendingCalls > 0)) {
+                    return;
+                }
+                if (calls.indexOf(call) > 0 && metrics != null) {
+                    metrics.increment("hedged_wins", 1);
+                }
+            }
+            complete(fetched);
+        }
+
+        /**
+         * Marks the exchange as done and cancels the other calls and the timers.
+         *
+         * @return false if the exchange has already been done
+         */
+        private synchronized boolean claim() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            for (Call<AllMeasurements> call : calls) {
+                call.cancel();
+            }
+            for (ScheduledFuture<?> timer : timers) {
+                timer.cancel(false);
+            }
+            return true;
+        }
+
+        /**
+         * Stores the history of the result and publishes it, unless the exchange has already been done.
+         */
+        private void complete(FetchResult fetched) {
+            if (!claim()) {
+                return;
+            }
+            if (store != null && fetched.isSuccessful()) {
+                try {
+                    //noinspection ConstantConditions
+                    store.append(target.getKey(), fetched.measurements.getHistoryColumns());
+                } catch (IOException ignored) {
+                    // The store only extends the history, the fetched measurements are still valid
+                }
+            }
+            result.complete(fetched);
+        }
+    }
+}
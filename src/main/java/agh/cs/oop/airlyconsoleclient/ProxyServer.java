@@ -0,0 +1,282 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AirlyApi;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.RateLimiter;
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server with the routes of {@link AirlyApi}, answering from an in-memory cache, so that many local
+ * consumers share upstream requests made with a single API key.
+ * <p>
+ * A response is cached until Airly is expected to publish newer measurements. Requests for a target which is
+ * being fetched wait for the request in flight, so a target is fetched upstream at most once per update period
+ * regardless of the number of consumers. Map points are snapped to the grid like in {@link MeasurementsFetcher}.
+ * <p>
+ * Handlers never block: cached responses are sent right away, the others when the upstream call completes,
+ * from the thread of the HTTP client. Only successful responses are cached, errors are passed on to the waiting
+ * consumers only.
+ */
+public class ProxyServer {
+
+    private static final String SENSOR_PATH = "/v1/sensor/measurements";
+    private static final String MAP_POINT_PATH = "/v1/mapPoint/measurements";
+
+    /** Minimum time between removals of expired replies */
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int BACKLOG = 256;
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final AirlyApi api;
+    private final String apiKey;
+    private final int gridPrecision;
+    private final Metrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, CompletableFuture<Reply>> replies = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeMillis = new AtomicLong();
+
+    /**
+     * @param gridPrecision length of geohashes of grid cells, 0 to fetch map points at their exact coordinates
+     */
+    public ProxyServer(AirlyApi api, String apiKey, int gridPrecision, Metrics metrics, InetSocketAddress address)
+            throws IOException {
+        this.api = api;
+        this.apiKey = apiKey;
+        this.gridPrecision = gridPrecision;
+        this.metrics = metrics;
+        // Headers and body are written separately; with Nagle's algorithm the body of a response on a kept-alive
+        // connection waits for the delayed ACK of the headers (about 40 ms). Read when the server is first created.
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "proxy-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        metrics.increment("proxy_requests", 1);
+
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, Reply.error(405, "Method not allowed"), start);
+            return;
+        }
+
+        Target target;
+        try {
+            target = parseTarget(exchange);
+        } catch (IllegalArgumentException e) {
+            send(exchange, Reply.error(400, e.getMessage()), start);
+            return;
+        }
+        if (target == null) {
+            send(exchange, Reply.error(404, "Not found"), start);
+            return;
+        }
+
+        Target query = target.snapToGrid(gridPrecision);
+        String key = query.getKey();
+        long now = System.currentTimeMillis();
+        boolean[] miss = {false};
+        CompletableFuture<Reply> reply = replies.compute(key, (k, existing) -> {
+            if (existing != null && !isExpired(existing, now)) {
+                return existing;
+            }
+            miss[0] = true;
+            return new CompletableFuture<>();
+        });
+
+        if (miss[0]) {
+            metrics.increment("proxy_upstream_fetches", 1);
+            purgeExpired(now);
+            fetch(query, key, reply);
+        }
+        reply.thenAccept(result -> send(exchange, result, start));
+    }
+
+    /**
+     * @return the requested target, or null if the path is not a known route
+     * @throws IllegalArgumentException if the query parameters are missing or invalid
+     */
+    private static @Nullable Target parseTarget(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        try {
+            if (path.equals(SENSOR_PATH)) {
+                return new Target(Integer.parseUnsignedInt(required(parameters, "sensorId")));
+            } else if (path.equals(MAP_POINT_PATH)) {
+                return new Target(Double.parseDouble(required(parameters, "latitude")),
+                        Double.parseDouble(required(parameters, "longitude")));
+            } else {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid query parameter");
+        }
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing query parameter: " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(@Nullable String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        return parameters;
+    }
+
+    /**
+     * Removes expired replies, which are otherwise replaced only when their target is requested again,
+     * at most once per {@link #PURGE_INTERVAL_MILLIS}.
+     */
+    private void purgeExpired(long now) {
+        long nextPurge = nextPurgeMillis.get();
+        if (now >= nextPurge && nextPurgeMillis.compareAndSet(nextPurge, now + PURGE_INTERVAL_MILLIS)) {
+            replies.values().removeIf(reply -> isExpired(reply, now));
+        }
+    }
+
+    private static boolean isExpired(CompletableFuture<Reply> reply, long now) {
+        return reply.isDone() && reply.join().expiresAtMillis <= now;
+    }
+
+    /**
+     * Fetches the target upstream and completes the reply. A reply which is not cacheable is removed
+     * once the waiting consumers got it.
+     */
+    private void fetch(Target target, String key, CompletableFuture<Reply> reply) {
+        Call<ResponseBody> call;
+        if (target.sensorId != null) {
+            call = api.rawSensorMeasurements(apiKey, RateLimiter.Priority.INTERACTIVE, target.sensorId);
+        } else {
+            //noinspection ConstantConditions
+            call = api.rawMapPointMeasurements(apiKey, RateLimiter.Priority.INTERACTIVE,
+                    target.latitude, target.longitude);
+        }
+
+        call.enqueue(new Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                ResponseBody body = response.isSuccessful() ? response.body() : response.errorBody();
+                try {
+                    byte[] bytes = body != null ? body.bytes() : new byte[0];
+                    MediaType contentType = body != null ? body.contentType() : null;
+                    long expiration = response.code() == 200
+                            ? AllMeasurements.expirationOf(bytes, System.currentTimeMillis()) : 0;
+                    complete(key, reply, new Reply(response.code(),
+                            contentType != null ? contentType.toString() : "application/json", bytes, expiration));
+                } catch (IOException e) {
+                    onFailure(call, e);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                complete(key, reply, Reply.error(502, "Failed to connect to the server: " + t.getMessage()));
+            }
+        });
+    }
+
+    private void complete(String key, CompletableFuture<Reply> reply, Reply result) {
+        reply.complete(result);
+        if (result.expiresAtMillis <= System.currentTimeMillis()) {
+            replies.remove(key, reply);
+        }
+    }
+
+    private void send(HttpExchange exchange, Reply reply, long start) {
+        try (OutputStream output = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", reply.contentType);
+            exchange.sendResponseHeaders(reply.status, reply.body.length);
+            output.write(reply.body);
+        } catch (IOException ignored) {
+            // The consumer disconnected
+        } finally {
+            exchange.close();
+            metrics.record("proxy_response", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Response passed on to consumers. It expires at once unless it is a successful upstream response.
+     */
+    private static class Reply {
+        final int status;
+        final String contentType;
+        final byte[] body;
+        final long expiresAtMillis;
+
+        Reply(int status, String contentType, byte[] body, long expiresAtMillis) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        static Reply error(int status, String message) {
+            return new Reply(status, "text/plain; charset=utf-8", (message + "\n").getBytes(StandardCharsets.UTF_8), 0);
+        }
+    }
+}
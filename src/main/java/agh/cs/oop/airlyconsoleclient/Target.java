@@ -0,0 +1,85 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.geo.Geohash;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * A single thing to fetch measurements for: either a sensor or a map point (latitude & longitude).
+ */
+public class Target {
+    public final @Nullable Integer sensorId;
+    public final @Nullable Double latitude;
+    public final @Nullable Double longitude;
+
+    public Target(int sensorId) {
+        this.sensorId = sensorId;
+        this.latitude = null;
+        this.longitude = null;
+    }
+
+    public Target(double latitude, double longitude) {
+        this.sensorId = null;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Parses a target written either as a sensor ID ("1234") or as coordinates ("50.06,19.94").
+     *
+     * @throws NumberFormatException if the text is neither of them
+     */
+    public static Target parse(String text) {
+        String[] parts = text.split(",");
+        if (parts.length == 1) {
+            return new Target(Integer.parseUnsignedInt(parts[0].trim()));
+        } else if (parts.length == 2) {
+            return new Target(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } else {
+            throw new NumberFormatException("Invalid target: " + text);
+        }
+    }
+
+    /**
+     * Returns the map point moved to the center of its geohash grid cell, so that nearby points become equal.
+     * A sensor is returned unchanged.
+     *
+     * @param precision length of the geohash, 0 to return the target unchanged
+     */
+    public Target snapToGrid(int precision) {
+        if (sensorId != null || precision == 0) {
+            return this;
+        }
+        //noinspection ConstantConditions
+        double[] center = Geohash.decodeCenter(Geohash.encode(latitude, longitude, precision));
+        return new Target(center[0], center[1]);
+    }
+
+    /**
+     * Returns a name identifying the target, usable as a file name, e.g. "sensor-1234" or "point-50.061000_19.937000".
+     */
+    public String getKey() {
+        if (sensorId != null) {
+            return "sensor-" + sensorId;
+        } else {
+            return String.format(Locale.ROOT, "point-%f_%f", latitude, longitude);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (sensorId != null) {
+            return "Sensor ID: " + sensorId;
+        } else {
+            //noinspection ConstantConditions
+            return String.format(
+                    "Lat. %f° %c, Long. %f° %c",
+                    Math.abs(latitude),
+                    latitude >= 0 ? 'N' : 'S',
+                    Math.abs(longitude),
+                    longitude >= 0 ? 'E' : 'W'
+            );
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Off-screen buffer of terminal cells.
+ * <p>
+ * Text is printed like to a terminal: '\n' moves the cursor to the beginning of the next row and SGR escape
+ * sequences (reset, bold, 256-color foreground and background) change the style of subsequent cells.
+ * The frame can be written out in one bulk write, either whole or as a difference from a previously written frame.
+ */
+public class TerminalFrame {
+
+    /*
+     * Style of a cell packed into an int:
+     *  bits  0-8  foreground color + 1 (0 = default)
+     *  bits 9-17  background color + 1 (0 = default)
+     *  bit    18  bold
+     */
+    private static final int STYLE_DEFAULT = 0;
+    private static final int FG_MASK = 0x1FF;
+    private static final int BG_SHIFT = 9;
+    private static final int BG_MASK = 0x1FF << BG_SHIFT;
+    private static final int BOLD = 1 << 18;
+
+    /** Unchanged cells shorter than this between two changed ones are rewritten instead of moving the cursor */
+    private static final int MAX_DIFF_GAP = 8;
+
+    private final List<Row> rows = new ArrayList<>();
+    private int cursorRow = 0;
+    private int cursorColumn = 0;
+    private int style = STYLE_DEFAULT;
+
+    public TerminalFrame print(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                cursorRow++;
+                cursorColumn = 0;
+            } else if (c == '\033' && i + 1 < length && text.charAt(i + 1) == '[') {
+                i = parseEscapeSequence(text, i + 2);
+            } else {
+                row(cursorRow).set(cursorColumn++, c, style);
+            }
+        }
+        return this;
+    }
+
+    public TerminalFrame println(CharSequence text) {
+        return print(text).println();
+    }
+
+    public TerminalFrame println() {
+        row(cursorRow);
+        cursorRow++;
+        cursorColumn = 0;
+        return this;
+    }
+
+    /**
+     * Copies all cells of another frame, placing its top-left corner at the given position.
+     */
+    public void draw(TerminalFrame frame, int row, int column) {
+        for (int r = 0; r < frame.rows.size(); r++) {
+            Row source = frame.rows.get(r);
+            Row target = row(row + r);
+            for (int c = 0; c < source.length; c++) {
+                target.set(column + c, source.chars[c], source.styles[c]);
+            }
+        }
+    }
+
+    /**
+     * Number of rows with any content, including the row with the cursor if it is not empty.
+     */
+    public int getHeight() {
+        return rows.size();
+    }
+
+    public int getWidth() {
+        int width = 0;
+        for (Row row : rows) {
+            width = Math.max(width, row.length);
+        }
+        return width;
+    }
+
+    /**
+     * Writes all the rows, each followed by a new line.
+     */
+    public void writeTo(Appendable output) {
+        StringBuilder builder = new StringBuilder(estimateSize());
+        int currentStyle = STYLE_DEFAULT;
+
+        for (Row row : rows) {
+            for (int c = 0; c < row.length; c++) {
+                currentStyle = appendStyleChange(builder, currentStyle, row.styles[c]);
+                builder.append(row.chars[c]);
+            }
+            currentStyle = appendStyleChange(builder, currentStyle, STYLE_DEFAULT);
+            builder.append('\n');
+        }
+
+        write(output, builder);
+    }
+
+    /**
+     * Updates the screen that currently shows {@code previous} so that it shows this frame.
+     * Only changed cells are written. If there is no previous frame, the screen is cleared and the whole frame
+     * is written. Both frames are expected to be drawn from the top-left corner of the screen.
+     */
+    public void writeDiffTo(Appendable output, @Nullable TerminalFrame previous) {
+        StringBuilder builder = new StringBuilder(previous == null ? estimateSize() : 256);
+
+        if (previous == null) {
+            builder.append("\033[H\033[2J");
+            previous = new TerminalFrame();
+        }
+
+        int currentStyle = STYLE_DEFAULT;
+
+        for (int r = 0; r < rows.size(); r++) {
+            Row row = rows.get(r);
+            Row old = r < previous.rows.size() ? previous.rows.get(r) : Row.EMPTY;
+
+            int c = 0;
+            while (c < row.length) {
+                if (!row.differs(old, c)) {
+                    c++;
+                    continue;
+                }
+
+                // Extend the run of changed cells, absorbing short gaps of unchanged ones
+                int end = c + 1;
+                int gap = 0;
+                for (int i = end; i < row.length && gap < MAX_DIFF_GAP; i++) {
+                    if (row.differs(old, i)) {
+                        end = i + 1;
+                        gap = 0;
+                    } else {
+                        gap++;
+                    }
+                }
+
+                appendCursorPosition(builder, r, c);
+                for (int i = c; i < end; i++) {
+                    currentStyle = appendStyleChange(builder, currentStyle, row.styles[i]);
+                    builder.append(row.chars[i]);
+                }
+                c = end;
+            }
+
+            if (old.length > row.length) {
+                currentStyle = appendStyleChange(builder, currentStyle, STYLE_DEFAULT);
+                appendCursorPosition(builder, r, row.length);
+                builder.append("\033[K");
+            }
+        }
+
+        currentStyle = appendStyleChange(builder, currentStyle, STYLE_DEFAULT);
+
+        // Leave the cursor below the frame and clear rows left from the previous frame
+        appendCursorPosition(builder, rows.size(), 0);
+        if (previous.rows.size() > rows.size()) {
+            builder.append("\033[J");
+        }
+
+        write(output, builder);
+    }
+
+    private Row row(int index) {
+        while (rows.size() <= index) {
+            rows.add(new Row());
+        }
+        return rows.get(index);
+    }
+
+    /**
+     * Parses a CSI sequence which parameters start at {@code start}. Only SGR sequences are interpreted.
+     *
+     * @return index of the last character of the sequence
+     */
+    private int parseEscapeSequence(CharSequence text, int start) {
+        int end = start;
+        while (end < text.length() && !isFinalByte(text.charAt(end))) {
+            end++;
+        }
+        if (end >= text.length()) {
+            return text.length() - 1;
+        }
+        if (text.charAt(end) != 'm') {
+            return end;
+        }
+
+        int[] params = parseParams(text, start, end);
+        for (int i = 0; i < params.length; i++) {
+            int param = params[i];
+            if (param == 0) {
+                style = STYLE_DEFAULT;
+            } else if (param == 1) {
+                style |= BOLD;
+            } else if (param == 22) {
+                style &= ~BOLD;
+            } else if (param == 39) {
+                style &= ~FG_MASK;
+            } else if (param == 49) {
+                style &= ~BG_MASK;
+            } else if ((param == 38 || param == 48) && i + 2 < params.length && params[i + 1] == 5) {
+                int color = params[i + 2] & 0xFF;
+                if (param == 38) {
+                    style = (style & ~FG_MASK) | (color + 1);
+                } else {
+                    style = (style & ~BG_MASK) | ((color + 1) << BG_SHIFT);
+                }
+                i += 2;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isFinalByte(char c) {
+        return c >= '@' && c <= '~';
+    }
+
+    private static int[] parseParams(CharSequence text, int start, int end) {
+        int[] params = new int[8];
+        int count = 0;
+        int value = 0;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ';';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else if (c == ';') {
+                if (count == params.length) {
+                    params = Arrays.copyOf(params, count * 2);
+                }
+                params[count++] = value;
+                value = 0;
+            }
+        }
+        return Arrays.copyOf(params, count);
+    }
+
+    private static int appendStyleChange(StringBuilder builder, int from, int to) {
+        if (from == to) {
+            return to;
+        }
+
+        builder.append("\033[0");
+        if ((to & BOLD) != 0) {
+            builder.append(";1");
+        }
+        if ((to & FG_MASK) != 0) {
+            builder.append(";38;5;").append((to & FG_MASK) - 1);
+        }
+        if ((to & BG_MASK) != 0) {
+            builder.append(";48;5;").append(((to & BG_MASK) >> BG_SHIFT) - 1);
+        }
+        builder.append('m');
+        return to;
+    }
+
+    private static void appendCursorPosition(StringBuilder builder, int row, int column) {
+        builder.append("\033[").append(row + 1).append(';').append(column + 1).append('H');
+    }
+
+    private int estimateSize() {
+        int cells = 0;
+        for (Row row : rows) {
+            cells += row.length + 1;
+        }
+        // Escape sequences take roughly as much space as the text itself
+        return cells * 2;
+    }
+
+    private static void write(Appendable output, CharSequence text) {
+        try {
+            output.append(text);
+            if (output instanceof Flushable) {
+                ((Flushable) output).flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Row {
+        static final Row EMPTY = new Row();
+
+        char[] chars = new char[0];
+        int[] styles = new int[0];
+        int length = 0;
+
+        void set(int column, char c, int style) {
+            if (column >= chars.length) {
+                int capacity = Math.max(column + 1, Math.max(16, chars.length * 2));
+                chars = Arrays.copyOf(chars, capacity);
+                styles = Arrays.copyOf(styles, capacity);
+            }
+            // Skipped cells become default-styled spaces
+            for (int i = length; i < column; i++) {
+                chars[i] = ' ';
+                styles[i] = STYLE_DEFAULT;
+            }
+            chars[column] = c;
+            styles[column] = style;
+            length = Math.max(length, column + 1);
+        }
+
+        boolean differs(Row other, int column) {
+            return column >= other.length
+                    || chars[column] != other.chars[column]
+                    || styles[column] != other.styles[column];
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.RateLimiter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static java.lang.System.*;
+
+/**
+ * Keeps re-fetching measurements of the targets.
+ * <p>
+ * Airly publishes new measurements once per measurement period (an hour), so instead of polling at a fixed rate
+ * every target is polled shortly after the end of the period following its latest history entry.
+ * A random jitter spreads polls of many targets over time. Refreshes have background priority, so they give way
+ * to requests the user waits for, e.g. of other invocations run by the daemon.
+ */
+public class Watcher {
+
+    /** Time given to Airly to publish measurements after the end of a period */
+    private static final long UPDATE_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** Delay of the next poll if a request failed or the data has not been updated yet */
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MIN_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final MeasurementsFetcher fetcher;
+    private final List<Target> targets;
+    private final long jitterMillis;
+    private final Consumer<List<FetchResult>> listener;
+
+    private final FetchResult[] results;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param listener called with the latest results (null if not fetched yet) in the order of targets
+     *                 after every update. Calls are never concurrent.
+     */
+    public Watcher(MeasurementsFetcher fetcher, List<Target> targets, long jitterMillis,
+                   Consumer<List<FetchResult>> listener) {
+        this.fetcher = fetcher;
+        this.targets = targets;
+        this.jitterMillis = jitterMillis;
+        this.listener = listener;
+        this.results = new FetchResult[targets.size()];
+    }
+
+    /**
+     * Starts polling and blocks forever.
+     */
+    public void run() throws InterruptedException {
+        for (int i = 0; i < targets.size(); i++) {
+            poll(i, RateLimiter.Priority.INTERACTIVE);
+        }
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * Fetches the target and schedules the next poll, even if the fetch or the listener failed.
+     *
+     * @param priority {@link RateLimiter.Priority#INTERACTIVE} for the first fetch, which the user waits for
+     */
+    private void poll(int index, RateLimiter.Priority priority) {
+        fetcher.fetchAsync(targets.get(index), priority).whenComplete((result, failure) -> {
+            long delay = RETRY_DELAY_MILLIS;
+            try {
+                if (failure != null) {
+                    err.println(targets.get(index) + ": Failed to fetch: " + failure);
+                } else {
+                    delay = nextPollDelay(result);
+                    update(index, result);
+                }
+            } catch (RuntimeException e) {
+                err.println(targets.get(index) + ": Failed to show the update: " + e);
+            } finally {
+                scheduler.schedule(() -> poll(index, RateLimiter.Priority.BACKGROUND), delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private synchronized void update(int index, FetchResult result) {
+        results[index] = result;
+        listener.accept(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(results))));
+    }
+
+    private long nextPollDelay(FetchResult result) {
+        long now = currentTimeMillis();
+        long jitter = jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis) : 0;
+
+        Date nextUpdate = result.measurements != null ? result.measurements.getNextUpdateDateTime() : null;
+        if (nextUpdate == null || nextUpdate.getTime() <= now) {
+            return RETRY_DELAY_MILLIS + jitter;
+        }
+        return Math.max(nextUpdate.getTime() + UPDATE_GRACE_MILLIS + jitter - now, MIN_DELAY_MILLIS);
+    }
+}
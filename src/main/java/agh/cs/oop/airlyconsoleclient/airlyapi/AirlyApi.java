@@ -1,17 +1,41 @@
 package agh.cs.oop.airlyconsoleclient.airlyapi;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Header;
 import retrofit2.http.Query;
 
+/**
+ * Endpoints of the server. The priority of a call orders it among the requests waiting for the rate limit
+ * of the API key; it is not sent to the server.
+ */
 public interface AirlyApi {
     @GET("v1/sensor/measurements")
     Call<AllMeasurements> sensorMeasurements(@Header("apikey") String apiKey,
+                                             @Header(RateLimiter.PRIORITY_HEADER) RateLimiter.Priority priority,
                                              @Query("sensorId") int sensorId);
 
     @GET("v1/mapPoint/measurements")
     Call<AllMeasurements> mapPointMeasurements(@Header("apikey") String apiKey,
+                                               @Header(RateLimiter.PRIORITY_HEADER) RateLimiter.Priority priority,
+                                               @Query("latitude") double latitude,
+                                               @Query("longitude") double longitude);
+
+    /**
+     * Same as {@link #sensorMeasurements}, but the response is not decoded.
+     */
+    @GET("v1/sensor/measurements")
+    Call<ResponseBody> rawSensorMeasurements(@Header("apikey") String apiKey,
+                                             @Header(RateLimiter.PRIORITY_HEADER) RateLimiter.Priority priority,
+                                             @Query("sensorId") int sensorId);
+
+    /**
+     * Same as {@link #mapPointMeasurements}, but the response is not decoded.
+     */
+    @GET("v1/mapPoint/measurements")
+    Call<ResponseBody> rawMapPointMeasurements(@Header("apikey") String apiKey,
+                                               @Header(RateLimiter.PRIORITY_HEADER) RateLimiter.Priority priority,
                                                @Query("latitude") double latitude,
                                                @Query("longitude") double longitude);
 }
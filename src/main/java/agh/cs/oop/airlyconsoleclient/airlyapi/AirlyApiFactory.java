@@ -1,15 +1,186 @@
 package agh.cs.oop.airlyconsoleclient.airlyapi;
 
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import org.jetbrains.annotations.Nullable;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class AirlyApiFactory {
+    public static final String DEFAULT_BASE_URL = "https://airapi.airly.eu/";
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private String baseUrl = DEFAULT_BASE_URL;
+    private @Nullable ResponseCache cache;
+    private boolean rateLimited;
+    private @Nullable EventListener.Factory eventListenerFactory;
+    private @Nullable Metrics metrics;
+    private @Nullable TrafficRecorder recorder;
+    private @Nullable TrafficLog replay;
+    private boolean replayOriginalTiming;
+
+    /**
+     * Sets URL of the server, e.g. to use a local stand-in of Airly API. Must end with '/'.
+     */
+    public AirlyApiFactory setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+
+    /**
+     * Responses will be served from the cache while they are fresh.
+     */
+    public AirlyApiFactory setCache(@Nullable ResponseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Requests will wait for the rate limiter of their API key ({@link #getRateLimiter}), with the priority
+     * of the call. Requests of all the APIs using the same key are throttled together.
+     */
+    public AirlyApiFactory setRateLimited(boolean rateLimited) {
+        this.rateLimited = rateLimited;
+        return this;
+    }
+
+    /**
+     * Listener of HTTP events (connecting, sending the request, receiving the response...) of every call.
+     */
+    public AirlyApiFactory setEventListenerFactory(@Nullable EventListener.Factory eventListenerFactory) {
+        this.eventListenerFactory = eventListenerFactory;
+        return this;
+    }
+
+    /**
+     * Requests, errors, bytes received, cache hits and times of calls and decoding will be recorded in the metrics.
+     */
+    public AirlyApiFactory setMetrics(@Nullable Metrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Responses will be recorded, to be replayed later.
+     */
+    public AirlyApiFactory setRecorder(@Nullable TrafficRecorder recorder) {
+        this.recorder = recorder;
+        return this;
+    }
+
+    /**
+     * Requests will be answered with the recorded responses instead of being sent. The rate limiter is not used.
+     *
+     * @param originalTiming whether responses are delayed by their recorded durations, or returned at once
+     */
+    public AirlyApiFactory setReplay(@Nullable TrafficLog replay, boolean originalTiming) {
+        this.replay = replay;
+        this.replayOriginalTiming = originalTiming;
+        return this;
+    }
+
+    /**
+     * Creates the API. The HTTP client is set up lazily, when the first request which is not served from the cache
+     * is sent.
+     */
     public AirlyApi createAirlyApi() {
+        ResponseCache cache = this.cache;
+        boolean rateLimited = this.rateLimited;
+        EventListener.Factory eventListenerFactory = this.eventListenerFactory;
+        Metrics metrics = this.metrics;
+        Interceptor trafficInterceptor = replay != null ? new ReplayInterceptor(replay, replayOriginalTiming)
+                : recorder != null ? new RecordingInterceptor(recorder)
+                : null;
+
+        Converter.Factory converterFactory = new DecoderConverterFactory();
         Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl("https://airapi.airly.eu/")
-                .addConverterFactory(GsonConverterFactory.create())
+                .baseUrl(baseUrl)
+                .callFactory(new CachingCallFactory(
+                        () -> createClient(cache, trafficInterceptor, rateLimited, eventListenerFactory, metrics),
+                        cache, metrics))
+                .addConverterFactory(metrics != null
+                        ? new TimingConverterFactory(converterFactory, metrics)
+                        : converterFactory)
                 .build();
 
         return retrofit.create(AirlyApi.class);
     }
+
+    /**
+     * @param trafficInterceptor interceptor recording or replaying responses
+     */
+    private static OkHttpClient createClient(@Nullable ResponseCache cache, @Nullable Interceptor trafficInterceptor,
+                                             boolean rateLimited,
+                                             @Nullable EventListener.Factory eventListenerFactory,
+                                             @Nullable Metrics metrics) {
+        // A derived client shares the connection pool and the dispatcher of the shared one
+        OkHttpClient.Builder client = SharedClient.INSTANCE.newBuilder();
+        if (cache != null) {
+            client.addInterceptor(new CacheInterceptor(cache));
+        }
+        if (trafficInterceptor != null) {
+            client.addInterceptor(trafficInterceptor);
+        }
+        if (rateLimited) {
+            client.addInterceptor(new RateLimitInterceptor());
+        }
+        if (metrics != null) {
+            client.addInterceptor(new MetricsInterceptor(metrics));
+        }
+        if (eventListenerFactory != null) {
+            client.eventListenerFactory(eventListenerFactory);
+        }
+        return client.build();
+    }
+
+    /**
+     * Returns the rate limiter of the API key, created on first use. The quota is per key, so the limiter
+     * is kept for the lifetime of the process: in the daemon, an invocation continues with the tokens and pauses
+     * left by the previous ones.
+     */
+    public static RateLimiter getRateLimiter(String apiKey) {
+        return SharedRateLimiters.BY_API_KEY.computeIfAbsent(apiKey, key -> new RateLimiter());
+    }
+
+    private static class SharedRateLimiters {
+        static final ConcurrentMap<String, RateLimiter> BY_API_KEY = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Client shared by all created APIs, so they reuse its pool of kept-alive connections (and HTTP/2 connections,
+     * which multiplex concurrent requests) and its threads. OkHttp negotiates HTTP/2 and gzip by itself.
+     * Created on first use, as setting up TLS takes a significant part of the start-up time.
+     * <p>
+     * Asynchronous calls run in daemon threads, so that idle threads do not keep the application running,
+     * and are not limited per host, as callers limit their concurrency themselves.
+     */
+    private static class SharedClient {
+        static final OkHttpClient INSTANCE = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(createDispatcher())
+                .build();
+
+        private static Dispatcher createDispatcher() {
+            Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                    60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "http-client");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            dispatcher.setMaxRequestsPerHost(dispatcher.getMaxRequests());
+            return dispatcher;
+        }
+    }
 }
@@ -1,23 +1,106 @@
 package agh.cs.oop.airlyconsoleclient.airlyapi;
 
-import java.util.Arrays;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Response of "/v1/sensor/measurements" and "/v1/mapPoint/measurements"
- * Deserialized by GSON.
+ * Deserialized by {@link AllMeasurementsDecoder}.
  */
-@SuppressWarnings("unused")
 public class AllMeasurements {
-    private Measurement currentMeasurements;
-    private MeasurementWithTime[] history;
+
+    /** Time measurements are current for when the time of the next update is unknown or has already passed */
+    private static final long FALLBACK_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_TTL_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    private final @Nullable Measurement currentMeasurements;
+    private final MeasurementColumns history;
+    private @Nullable List<MeasurementWithTime> historyList;
+
+    public AllMeasurements(@Nullable Measurement currentMeasurements, MeasurementColumns history) {
+        this.currentMeasurements = currentMeasurements;
+        this.history = history;
+    }
 
     public Measurement getCurrentMeasurements() {
         return currentMeasurements;
     }
 
+    /**
+     * Returns the history as objects. They are created on the first call,
+     * {@link #getHistoryColumns()} should be preferred.
+     */
     public List<MeasurementWithTime> getHistory() {
-        return Collections.unmodifiableList(Arrays.asList(history));
+        List<MeasurementWithTime> list = historyList;
+        if (list == null) {
+            list = new ArrayList<>(history.size());
+            for (int i = 0; i < history.size(); i++) {
+                list.add(history.get(i));
+            }
+            list = Collections.unmodifiableList(list);
+            historyList = list;
+        }
+        return list;
+    }
+
+    public MeasurementColumns getHistoryColumns() {
+        return history;
+    }
+
+    /**
+     * Returns the time when the measurement period following the latest history entry ends,
+     * i.e. when Airly is expected to publish new measurements.
+     *
+     * @return the time, or null if it cannot be determined from the history
+     */
+    public @Nullable Date getNextUpdateDateTime() {
+        int size = history.size();
+        if (size == 0) {
+            return null;
+        }
+
+        long from = history.getFromTimes()[size - 1];
+        long till = history.getTillTimes()[size - 1];
+        if (from == MeasurementWithTime.NO_TIME || till == MeasurementWithTime.NO_TIME) {
+            return null;
+        }
+
+        return till > from ? new Date(till + (till - from)) : null;
+    }
+
+    /**
+     * Returns the time until which the measurements are current: the time of the next update, but at most
+     * 2 hours from now, or 5 minutes from now if it is unknown or has already passed.
+     */
+    public long getExpirationMillis(long now) {
+        Date nextUpdate = getNextUpdateDateTime();
+        if (nextUpdate != null && nextUpdate.getTime() > now) {
+            return Math.min(nextUpdate.getTime(), now + MAX_TTL_MILLIS);
+        }
+        return now + FALLBACK_TTL_MILLIS;
+    }
+
+    /**
+     * Returns the time until which the measurements in a response body are current, as
+     * {@link #getExpirationMillis(long)}; 5 minutes from now if the body cannot be decoded.
+     */
+    public static long expirationOf(byte[] body, long now) {
+        try {
+            AllMeasurements measurements = new AllMeasurementsDecoder()
+                    .fromJson(new String(body, StandardCharsets.UTF_8));
+            if (measurements != null) {
+                return measurements.getExpirationMillis(now);
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Malformed or partial response - use the fallback TTL
+        }
+        return now + FALLBACK_TTL_MILLIS;
     }
 }
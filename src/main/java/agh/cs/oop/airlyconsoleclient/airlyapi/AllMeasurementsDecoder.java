@@ -0,0 +1,216 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decodes {@link AllMeasurements} in a single pass over the JSON tokens, without reflection.
+ * The history is written straight into {@link MeasurementColumns}, so no objects are created per history entry.
+ */
+public class AllMeasurementsDecoder extends JsonDecoder<AllMeasurements> {
+
+    private static final int HISTORY_CAPACITY = 32;
+
+    // Indices of measurement values in the buffer used while decoding
+    private static final int AIR_QUALITY_INDEX = 0;
+    private static final int PM1 = 1;
+    private static final int PM25 = 2;
+    private static final int PM10 = 3;
+    private static final int PRESSURE = 4;
+    private static final int HUMIDITY = 5;
+    private static final int TEMPERATURE = 6;
+    private static final int POLLUTION_LEVEL = 7;
+    static final int VALUE_COUNT = 8;
+
+    private static final int NO_POLLUTION_LEVEL = -1;
+
+    @Override
+    public AllMeasurements read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        double[] values = new double[VALUE_COUNT];
+        Measurement currentMeasurements = null;
+        MeasurementColumns history = new MeasurementColumns(HISTORY_CAPACITY);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("currentMeasurements")) {
+                readMeasurement(reader, values);
+                currentMeasurements = toMeasurement(values);
+            } else if (name.equals("history")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readMeasurementWithTime(reader, values, history);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new AllMeasurements(currentMeasurements, history.trim());
+    }
+
+    /**
+     * Reads a history entry and adds it to the columns.
+     *
+     * @param values buffer of {@link #VALUE_COUNT} values
+     */
+    static void readMeasurementWithTime(JsonReader reader, double[] values, MeasurementColumns history)
+            throws IOException {
+        long fromTime = MeasurementWithTime.NO_TIME;
+        long tillTime = MeasurementWithTime.NO_TIME;
+        clear(values);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("fromDateTime")) {
+                fromTime = parseTime(reader.nextString());
+            } else if (name.equals("tillDateTime")) {
+                tillTime = parseTime(reader.nextString());
+            } else if (name.equals("measurements")) {
+                readMeasurement(reader, values);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        history.add(fromTime, tillTime,
+                values[AIR_QUALITY_INDEX], values[PM1], values[PM25], values[PM10],
+                values[PRESSURE], values[HUMIDITY], values[TEMPERATURE], (int) values[POLLUTION_LEVEL]);
+    }
+
+    /**
+     * Reads a measurement into the buffer of {@link #VALUE_COUNT} values.
+     */
+    static void readMeasurement(JsonReader reader, double[] values) throws IOException {
+        clear(values);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "airQualityIndex":
+                    values[AIR_QUALITY_INDEX] = reader.nextDouble();
+                    break;
+                case "pm1":
+                    values[PM1] = reader.nextDouble();
+                    break;
+                case "pm25":
+                    values[PM25] = reader.nextDouble();
+                    break;
+                case "pm10":
+                    values[PM10] = reader.nextDouble();
+                    break;
+                case "pressure":
+                    values[PRESSURE] = reader.nextDouble();
+                    break;
+                case "humidity":
+                    values[HUMIDITY] = reader.nextDouble();
+                    break;
+                case "temperature":
+                    values[TEMPERATURE] = reader.nextDouble();
+                    break;
+                case "pollutionLevel":
+                    values[POLLUTION_LEVEL] = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    static Measurement toMeasurement(double[] values) {
+        return new Measurement(
+                values[AIR_QUALITY_INDEX], values[PM1], values[PM25], values[PM10],
+                values[PRESSURE], values[HUMIDITY], values[TEMPERATURE], (int) values[POLLUTION_LEVEL]);
+    }
+
+    private static void clear(double[] values) {
+        for (int i = 0; i < POLLUTION_LEVEL; i++) {
+            values[i] = 0.0;
+        }
+        values[POLLUTION_LEVEL] = NO_POLLUTION_LEVEL;
+    }
+
+    /**
+     * Parses an ISO-8601 date-time into epoch millis. The format used by Airly ("2018-01-22T20:00:00Z",
+     * optionally with milliseconds) is parsed without creating any objects, other formats are delegated
+     * to {@link OffsetDateTime}.
+     */
+    static long parseTime(String text) {
+        int length = text.length();
+        if ((length == 20 || length == 24) && text.charAt(length - 1) == 'Z'
+                && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+                && text.charAt(13) == ':' && text.charAt(16) == ':'
+                && (length == 20 || text.charAt(19) == '.')) {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = digits(text, 17, 2);
+            int millis = length == 24 ? digits(text, 20, 3) : 0;
+
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour <= 23
+                    && minute >= 0 && minute <= 59 && second >= 0 && second <= 59 && millis >= 0) {
+                long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+                return seconds * 1000L + millis;
+            }
+        }
+
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new JsonParseException("Invalid date: " + text, e);
+        }
+    }
+
+    /**
+     * @return value of the decimal digits or -1 if there is a non-digit character
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Number of days since 1970-01-01 of a date in the proleptic Gregorian calendar (H. Hinnant's algorithm).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,45 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.*;
+
+import java.io.IOException;
+
+/**
+ * Stores successful GET responses in {@link ResponseCache}. Fresh responses are served by {@link CachingCallFactory},
+ * without reaching the HTTP client.
+ * <p>
+ * Airly updates measurements once per measurement period (an hour), so an entry expires when the period following
+ * the latest history entry ends. The key consists of the endpoint and query parameters only - the API key header
+ * does not affect the returned data.
+ */
+class CacheInterceptor implements Interceptor {
+
+    private final ResponseCache cache;
+
+    CacheInterceptor(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!request.method().equals("GET") || response.code() != 200 || response.body() == null) {
+            return response;
+        }
+
+        ResponseBody body = response.body();
+        MediaType contentType = body.contentType();
+        byte[] bytes = body.bytes();
+
+        cache.put(keyOf(request), bytes, AllMeasurements.expirationOf(bytes, System.currentTimeMillis()));
+
+        return response.newBuilder()
+                .body(ResponseBody.create(contentType, bytes))
+                .build();
+    }
+
+    static String keyOf(Request request) {
+        return request.url().toString();
+    }
+}
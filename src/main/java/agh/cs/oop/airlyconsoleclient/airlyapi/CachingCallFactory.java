@@ -0,0 +1,148 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import okhttp3.*;
+import okio.Timeout;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Creates calls answered from {@link ResponseCache} when it has a fresh response, and calls of the HTTP client
+ * otherwise. The client is created only when the first request goes to the network, so a run served entirely
+ * from the cache skips its set-up (mainly loading of the trusted certificates for TLS).
+ */
+class CachingCallFactory implements Call.Factory {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final Supplier<OkHttpClient> clientSupplier;
+    private final @Nullable ResponseCache cache;
+    private final @Nullable Metrics metrics;
+    private volatile @Nullable OkHttpClient client;
+
+    CachingCallFactory(Supplier<OkHttpClient> clientSupplier, @Nullable ResponseCache cache,
+                       @Nullable Metrics metrics) {
+        this.clientSupplier = clientSupplier;
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        // The priority is read by RateLimitInterceptor, not sent to the server
+        String priority = request.header(RateLimiter.PRIORITY_HEADER);
+        if (priority != null) {
+            request = request.newBuilder()
+                    .removeHeader(RateLimiter.PRIORITY_HEADER)
+                    .tag(RateLimiter.Priority.class, RateLimiter.Priority.valueOf(priority))
+                    .build();
+        }
+
+        if (cache != null && request.method().equals("GET")) {
+            byte[] cached = cache.get(CacheInterceptor.keyOf(request));
+            if (metrics != null) {
+                metrics.increment(cached != null ? "cache_hits" : "cache_misses", 1);
+            }
+            if (cached != null) {
+                return new CachedCall(request, cached);
+            }
+        }
+        return client().newCall(request);
+    }
+
+    private OkHttpClient client() {
+        OkHttpClient client = this.client;
+        if (client == null) {
+            synchronized (this) {
+                client = this.client;
+                if (client == null) {
+                    client = clientSupplier.get();
+                    this.client = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Call returning a response body from the cache.
+     */
+    private static class CachedCall implements Call {
+        private final Request request;
+        private final byte[] body;
+        private boolean executed;
+        private volatile boolean canceled;
+
+        CachedCall(Request request, byte[] body) {
+            this.request = request;
+            this.body = body;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public synchronized Response execute() throws IOException {
+            if (executed) {
+                throw new IllegalStateException("Already Executed");
+            }
+            executed = true;
+            if (canceled) {
+                throw new IOException("Canceled");
+            }
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(JSON, body))
+                    .build();
+        }
+
+        /**
+         * Delivers the response in a thread of the common pool, like a call of the HTTP client delivers it in one
+         * of its threads, so the caller does not wait for the callback (e.g. decoding of the response).
+         */
+        @Override
+        public void enqueue(Callback callback) {
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    callback.onResponse(this, execute());
+                } catch (IOException e) {
+                    callback.onFailure(this, e);
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public synchronized boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @SuppressWarnings("MethodDoesntCallSuperMethod")
+        @Override
+        public Call clone() {
+            return new CachedCall(request, body);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import com.google.gson.stream.JsonReader;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Converts response bodies with the hand-written decoders. Unlike a Gson-based converter, it needs no
+ * {@link com.google.gson.Gson} instance, whose creation and reflective lookup of adapters slow down start-up.
+ */
+class DecoderConverterFactory extends Converter.Factory {
+
+    @Override
+    public @Nullable Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                                      Retrofit retrofit) {
+        if (type == AllMeasurements.class) {
+            return new DecoderConverter<>(new AllMeasurementsDecoder());
+        } else if (type == Measurement.class) {
+            return new DecoderConverter<>(new MeasurementDecoder());
+        } else if (type == MeasurementWithTime.class) {
+            return new DecoderConverter<>(new MeasurementWithTimeDecoder());
+        }
+        return null;
+    }
+
+    private static class DecoderConverter<T> implements Converter<ResponseBody, T> {
+        private final JsonDecoder<T> decoder;
+
+        DecoderConverter(JsonDecoder<T> decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public T convert(ResponseBody body) throws IOException {
+            try (JsonReader reader = new JsonReader(body.charStream())) {
+                return decoder.read(reader);
+            } finally {
+                body.close();
+            }
+        }
+    }
+}
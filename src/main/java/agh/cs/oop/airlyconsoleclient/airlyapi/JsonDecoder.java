@@ -0,0 +1,28 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import com.google.gson.stream.JsonReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Hand-written decoder of a type from JSON tokens. Responses are only read, so unlike a Gson
+ * {@link com.google.gson.TypeAdapter} it has no encoding half.
+ */
+public abstract class JsonDecoder<T> {
+
+    /**
+     * @return the decoded value, or null for a JSON null
+     */
+    public abstract @Nullable T read(JsonReader reader) throws IOException;
+
+    public @Nullable T fromJson(Reader json) throws IOException {
+        return read(new JsonReader(json));
+    }
+
+    public @Nullable T fromJson(String json) throws IOException {
+        return fromJson(new StringReader(json));
+    }
+}
@@ -1,15 +1,31 @@
 package agh.cs.oop.airlyconsoleclient.airlyapi;
 
-@SuppressWarnings({"unused", "FieldCanBeLocal"})
 public class Measurement {
-    private double airQualityIndex;
-    private double pm1;
-    private double pm25;
-    private double pm10;
-    private double pressure;
-    private double humidity;
-    private double temperature;
-    private int pollutionLevel = -1;
+    /** Norm of PM2.5 in μg/m³ */
+    public static final double PM25_NORM = 25.0;
+    /** Norm of PM10 in μg/m³ */
+    public static final double PM10_NORM = 50.0;
+
+    private final double airQualityIndex;
+    private final double pm1;
+    private final double pm25;
+    private final double pm10;
+    private final double pressure;
+    private final double humidity;
+    private final double temperature;
+    private final int pollutionLevel;
+
+    public Measurement(double airQualityIndex, double pm1, double pm25, double pm10,
+                       double pressure, double humidity, double temperature, int pollutionLevel) {
+        this.airQualityIndex = airQualityIndex;
+        this.pm1 = pm1;
+        this.pm25 = pm25;
+        this.pm10 = pm10;
+        this.pressure = pressure;
+        this.humidity = humidity;
+        this.temperature = temperature;
+        this.pollutionLevel = pollutionLevel;
+    }
 
     public double getAirQualityIndex() {
         return airQualityIndex;
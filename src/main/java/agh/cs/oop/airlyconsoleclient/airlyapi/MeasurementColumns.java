@@ -0,0 +1,153 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import java.util.Arrays;
+
+/**
+ * Series of measurements stored column by column in primitive arrays.
+ * <p>
+ * Arrays returned by the getters are shared, not copied, and must not be modified. Their length equals
+ * {@link #size()} once the columns are {@link #trim() trimmed}; before that they may be longer.
+ */
+public class MeasurementColumns {
+    private int size;
+    private long[] fromTimes;
+    private long[] tillTimes;
+    private double[] airQualityIndex;
+    private double[] pm1;
+    private double[] pm25;
+    private double[] pm10;
+    private double[] pressure;
+    private double[] humidity;
+    private double[] temperature;
+    private int[] pollutionLevel;
+
+    public MeasurementColumns(int capacity) {
+        fromTimes = new long[capacity];
+        tillTimes = new long[capacity];
+        airQualityIndex = new double[capacity];
+        pm1 = new double[capacity];
+        pm25 = new double[capacity];
+        pm10 = new double[capacity];
+        pressure = new double[capacity];
+        humidity = new double[capacity];
+        temperature = new double[capacity];
+        pollutionLevel = new int[capacity];
+    }
+
+    /**
+     * Creates columns from arrays of the same length. The arrays are not copied.
+     */
+    public MeasurementColumns(long[] fromTimes, long[] tillTimes, double[] airQualityIndex, double[] pm1,
+                              double[] pm25, double[] pm10, double[] pressure, double[] humidity,
+                              double[] temperature, int[] pollutionLevel) {
+        this.size = fromTimes.length;
+        this.fromTimes = fromTimes;
+        this.tillTimes = tillTimes;
+        this.airQualityIndex = airQualityIndex;
+        this.pm1 = pm1;
+        this.pm25 = pm25;
+        this.pm10 = pm10;
+        this.pressure = pressure;
+        this.humidity = humidity;
+        this.temperature = temperature;
+        this.pollutionLevel = pollutionLevel;
+    }
+
+    public void add(long fromTime, long tillTime, double airQualityIndex, double pm1, double pm25, double pm10,
+                    double pressure, double humidity, double temperature, int pollutionLevel) {
+        if (size == fromTimes.length) {
+            resize(Math.max(16, size * 2));
+        }
+        this.fromTimes[size] = fromTime;
+        this.tillTimes[size] = tillTime;
+        this.airQualityIndex[size] = airQualityIndex;
+        this.pm1[size] = pm1;
+        this.pm25[size] = pm25;
+        this.pm10[size] = pm10;
+        this.pressure[size] = pressure;
+        this.humidity[size] = humidity;
+        this.temperature[size] = temperature;
+        this.pollutionLevel[size] = pollutionLevel;
+        size++;
+    }
+
+    /**
+     * Shrinks the arrays to the number of measurements.
+     */
+    public MeasurementColumns trim() {
+        if (size != fromTimes.length) {
+            resize(size);
+        }
+        return this;
+    }
+
+    private void resize(int capacity) {
+        fromTimes = Arrays.copyOf(fromTimes, capacity);
+        tillTimes = Arrays.copyOf(tillTimes, capacity);
+        airQualityIndex = Arrays.copyOf(airQualityIndex, capacity);
+        pm1 = Arrays.copyOf(pm1, capacity);
+        pm25 = Arrays.copyOf(pm25, capacity);
+        pm10 = Arrays.copyOf(pm10, capacity);
+        pressure = Arrays.copyOf(pressure, capacity);
+        humidity = Arrays.copyOf(humidity, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+        pollutionLevel = Arrays.copyOf(pollutionLevel, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Beginnings of measurement periods in epoch millis */
+    public long[] getFromTimes() {
+        return fromTimes;
+    }
+
+    /** Ends of measurement periods in epoch millis */
+    public long[] getTillTimes() {
+        return tillTimes;
+    }
+
+    public double[] getAirQualityIndex() {
+        return airQualityIndex;
+    }
+
+    public double[] getPm1() {
+        return pm1;
+    }
+
+    public double[] getPm25() {
+        return pm25;
+    }
+
+    public double[] getPm10() {
+        return pm10;
+    }
+
+    public double[] getPressure() {
+        return pressure;
+    }
+
+    public double[] getHumidity() {
+        return humidity;
+    }
+
+    public double[] getTemperature() {
+        return temperature;
+    }
+
+    public int[] getPollutionLevel() {
+        return pollutionLevel;
+    }
+
+    /**
+     * Creates an object representing the measurement at the index.
+     */
+    public MeasurementWithTime get(int index) {
+        return new MeasurementWithTime(
+                fromTimes[index],
+                tillTimes[index],
+                new Measurement(airQualityIndex[index], pm1[index], pm25[index], pm10[index],
+                        pressure[index], humidity[index], temperature[index], pollutionLevel[index]));
+    }
+}
@@ -0,0 +1,24 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes a {@link Measurement} without reflection, the same way as {@link AllMeasurementsDecoder} does.
+ */
+public class MeasurementDecoder extends JsonDecoder<Measurement> {
+
+    @Override
+    public Measurement read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        double[] values = new double[AllMeasurementsDecoder.VALUE_COUNT];
+        AllMeasurementsDecoder.readMeasurement(reader, values);
+        return AllMeasurementsDecoder.toMeasurement(values);
+    }
+}
@@ -2,11 +2,23 @@ package agh.cs.oop.airlyconsoleclient.airlyapi;
 
 import java.util.Date;
 
-@SuppressWarnings("unused")
 public class MeasurementWithTime {
-    private Date fromDateTime;
-    private Date tillDateTime;
-    private Measurement measurements;
+    /** Value of a time that is not known */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Date fromDateTime;
+    private final Date tillDateTime;
+    private final Measurement measurements;
+
+    /**
+     * @param fromTime epoch millis or {@link #NO_TIME}
+     * @param tillTime epoch millis or {@link #NO_TIME}
+     */
+    public MeasurementWithTime(long fromTime, long tillTime, Measurement measurements) {
+        this.fromDateTime = fromTime != NO_TIME ? new Date(fromTime) : null;
+        this.tillDateTime = tillTime != NO_TIME ? new Date(tillTime) : null;
+        this.measurements = measurements;
+    }
 
     public Date getFromDateTime() {
         return fromDateTime;
@@ -0,0 +1,25 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes a {@link MeasurementWithTime} without reflection, the same way as {@link AllMeasurementsDecoder} decodes
+ * history entries.
+ */
+public class MeasurementWithTimeDecoder extends JsonDecoder<MeasurementWithTime> {
+
+    @Override
+    public MeasurementWithTime read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        MeasurementColumns columns = new MeasurementColumns(1);
+        AllMeasurementsDecoder.readMeasurementWithTime(reader, new double[AllMeasurementsDecoder.VALUE_COUNT], columns);
+        return columns.get(0);
+    }
+}
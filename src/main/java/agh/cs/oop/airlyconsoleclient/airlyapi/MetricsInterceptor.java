@@ -0,0 +1,63 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Records requests sent to the server: time until the response headers ("upstream_call"), number of requests,
+ * errors (failures and unsuccessful responses) and bytes of response bodies.
+ * Must be added after {@link CacheInterceptor} and {@link RateLimitInterceptor}, so that it sees only requests
+ * which are actually sent, without the time spent waiting for the rate limit.
+ */
+class MetricsInterceptor implements Interceptor {
+
+    private final Metrics metrics;
+
+    MetricsInterceptor(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        metrics.increment("requests", 1);
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            metrics.increment("errors", 1);
+            throw e;
+        }
+        metrics.record("upstream_call", System.nanoTime() - start);
+
+        if (!response.isSuccessful()) {
+            metrics.increment("errors", 1);
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        BufferedSource countingSource = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    metrics.increment("bytes_received", read);
+                }
+                return read;
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), countingSource))
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Sends requests when the {@link RateLimiter} of their API key allows, with the priority in the tag of the request
+ * ({@link RateLimiter.Priority#INTERACTIVE} if there is none), and retries the ones rejected with
+ * 429 Too Many Requests.
+ * Must be added after {@link CacheInterceptor}, so that responses served from the cache do not use the quota.
+ */
+class RateLimitInterceptor implements Interceptor {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String apiKey = request.header("apikey");
+        RateLimiter limiter = AirlyApiFactory.getRateLimiter(apiKey != null ? apiKey : "");
+        RateLimiter.Priority priority = request.tag(RateLimiter.Priority.class);
+        if (priority == null) {
+            priority = RateLimiter.Priority.INTERACTIVE;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                limiter.acquire(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+            }
+
+            Response response = chain.proceed(request);
+            limiter.onResponse(response);
+
+            if (response.code() != 429 || attempt == MAX_ATTEMPTS) {
+                return response;
+            }
+            response.close();
+        }
+    }
+}
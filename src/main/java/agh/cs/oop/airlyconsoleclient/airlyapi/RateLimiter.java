@@ -0,0 +1,165 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Response;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket throttling requests to the per-minute quota of an API key. There is a single limiter per key
+ * in the process ({@link AirlyApiFactory#getRateLimiter}), shared by all its APIs and by the invocations
+ * run by the daemon.
+ * <p>
+ * The quota is taken from the 'X-RateLimit-*-minute' headers of responses. Waiting requests are granted tokens
+ * by priority, then in order of arrival. When the server rejects a request anyway (429 Too Many Requests),
+ * requests are paused for 'Retry-After'. Without that header, they are paused for an exponentially growing delay
+ * and the rate is halved; it grows back gradually with every accepted request.
+ * <p>
+ * The priority is chosen per call of {@link AirlyApi}: it is passed in a header, which {@link CachingCallFactory}
+ * turns into a tag of the request.
+ */
+public class RateLimiter {
+
+    public enum Priority {
+        /** Requests the user is waiting for */
+        INTERACTIVE,
+        /** Refreshes which may be delayed */
+        BACKGROUND
+    }
+
+    /** Header carrying the priority of a call from {@link AirlyApi} to the call factory */
+    static final String PRIORITY_HEADER = "X-Priority";
+
+    /** Used until the first response tells the actual limit */
+    private static final int DEFAULT_LIMIT_PER_MINUTE = 50;
+    private static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /** The rate is never decreased below the quota divided by this */
+    private static final int MAX_RATE_DECREASE = 8;
+
+    private static final String LIMIT_HEADER = "X-RateLimit-Limit-minute";
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining-minute";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private long nextSequence;
+
+    private double capacity = DEFAULT_LIMIT_PER_MINUTE;
+    private double maxRatePerNano = DEFAULT_LIMIT_PER_MINUTE / (double) TimeUnit.MINUTES.toNanos(1);
+    private double ratePerNano = maxRatePerNano;
+    private double tokens = capacity;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = lastRefill;
+    private int rejections;
+
+    /**
+     * Blocks until the request may be sent.
+     */
+    public synchronized void acquire(Priority priority) throws InterruptedException {
+        Waiter waiter = new Waiter(priority, nextSequence++);
+        waiters.add(waiter);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long delay;
+                if (waiters.peek() != waiter) {
+                    delay = 0; // Until notified that the first waiter has been granted a token
+                } else {
+                    refill(now);
+                    if (now - pausedUntil >= 0 && tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    delay = Math.max(pausedUntil - now, (long) Math.ceil((1 - tokens) / ratePerNano));
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, delay == 0 ? Long.MAX_VALUE : Math.max(delay, 1));
+            }
+        } finally {
+            waiters.remove(waiter);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Tells whether an optional request (e.g. a duplicate of a slow one) may be sent without delaying others:
+     * no request is waiting, the requests are not paused and a token is available.
+     */
+    public synchronized boolean hasSpareTokens() {
+        long now = System.nanoTime();
+        refill(now);
+        return waiters.isEmpty() && now - pausedUntil >= 0 && tokens >= 1;
+    }
+
+    /**
+     * Updates the quota and the rate based on the response.
+     */
+    public synchronized void onResponse(Response response) {
+        long now = System.nanoTime();
+        refill(now);
+
+        Integer limit = parseHeader(response, LIMIT_HEADER);
+        if (limit != null && limit > 0 && limit != capacity) {
+            capacity = limit;
+            maxRatePerNano = limit / (double) TimeUnit.MINUTES.toNanos(1);
+            ratePerNano = Math.min(ratePerNano, maxRatePerNano);
+        }
+        Integer remaining = parseHeader(response, REMAINING_HEADER);
+        if (remaining != null) {
+            tokens = Math.min(tokens, remaining);
+        }
+
+        if (response.code() == 429) {
+            rejections++;
+            Integer retryAfterSeconds = parseHeader(response, RETRY_AFTER_HEADER);
+            long backoffMillis;
+            if (retryAfterSeconds != null) {
+                backoffMillis = TimeUnit.SECONDS.toMillis(retryAfterSeconds);
+            } else {
+                backoffMillis = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(rejections - 1, 16));
+                ratePerNano = Math.max(ratePerNano / 2, maxRatePerNano / MAX_RATE_DECREASE);
+            }
+            pausedUntil = now + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+            tokens = 0;
+        } else {
+            rejections = 0;
+            // Additive increase: the full rate is restored after a few accepted requests
+            ratePerNano = Math.min(maxRatePerNano, ratePerNano + maxRatePerNano / MAX_RATE_DECREASE);
+        }
+
+        notifyAll();
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+
+    private static @Nullable Integer parseHeader(Response response, String name) {
+        String value = response.header(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long sequence;
+
+        Waiter(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+/**
+ * Records responses in a {@link TrafficRecorder}. Added before {@link RateLimitInterceptor}, so a recorded
+ * response is the one returned after retries and its duration includes waiting for the rate limit.
+ */
+class RecordingInterceptor implements Interceptor {
+
+    private final TrafficRecorder recorder;
+
+    RecordingInterceptor(TrafficRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+
+        ResponseBody body = response.body();
+        MediaType contentType = body != null ? body.contentType() : null;
+        byte[] bytes = body != null ? body.bytes() : new byte[0];
+
+        try {
+            recorder.record(request, response, bytes, start);
+        } catch (IOException ignored) {
+            // The response is still valid, only the recording is incomplete
+        }
+
+        return response.newBuilder()
+                .body(ResponseBody.create(contentType, bytes))
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers requests with responses of a {@link TrafficLog}, without sending them. The following interceptors
+ * are not called.
+ */
+class ReplayInterceptor implements Interceptor {
+
+    private final TrafficLog log;
+    private final boolean originalTiming;
+
+    /**
+     * @param originalTiming whether responses are delayed by their recorded durations
+     */
+    ReplayInterceptor(TrafficLog log, boolean originalTiming) {
+        this.log = log;
+        this.originalTiming = originalTiming;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        TrafficLog.Exchange exchange = log.next(request);
+        if (exchange == null) {
+            throw new IOException("No recorded response to " + TrafficLog.keyOf(request));
+        }
+
+        long sent = System.currentTimeMillis();
+        if (originalTiming) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(exchange.durationNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying a response");
+            }
+        }
+
+        String contentType = exchange.headers.get("Content-Type");
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(exchange.status)
+                .message(exchange.message)
+                .headers(exchange.headers)
+                .body(ResponseBody.create(contentType != null ? MediaType.parse(contentType) : null, exchange.body))
+                .sentRequestAtMillis(sent)
+                .receivedResponseAtMillis(System.currentTimeMillis())
+                .build();
+    }
+}
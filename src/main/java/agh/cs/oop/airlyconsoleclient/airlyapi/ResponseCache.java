@@ -0,0 +1,151 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of response bodies. Every entry has its own expiration time.
+ * When the total size of entries exceeds the limit, the least recently used ones are removed.
+ * <p>
+ * Entry file format: expiration time (epoch millis, 8 bytes) followed by the response body.
+ */
+public class ResponseCache {
+
+    private static final int HEADER_SIZE = Long.BYTES;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxSize;
+
+    public ResponseCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the default cache directory: '$XDG_CACHE_HOME/airly-console-client' or '~/.cache/airly-console-client'.
+     */
+    public static Path defaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        Path base = cacheHome != null && !cacheHome.isEmpty()
+                ? Paths.get(cacheHome)
+                : Paths.get(System.getProperty("user.home"), ".cache");
+        return base.resolve("airly-console-client");
+    }
+
+    /**
+     * @return cached body, or null if there is no entry or it has expired
+     */
+    public @Nullable byte[] get(String key) {
+        Path file = fileOf(key);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (content.length < HEADER_SIZE || ByteBuffer.wrap(content).getLong() < System.currentTimeMillis()) {
+            return null;
+        }
+
+        try {
+            // The modification time serves as the last access time for the LRU eviction
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+
+        byte[] body = new byte[content.length - HEADER_SIZE];
+        System.arraycopy(content, HEADER_SIZE, body, 0, body.length);
+        return body;
+    }
+
+    /**
+     * Stores the body under the key. Failures are ignored, as the cache is only an optimization.
+     */
+    public void put(String key, byte[] body, long expiresAtMillis) {
+        try {
+            Files.createDirectories(directory);
+
+            Path file = fileOf(key);
+            Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), TEMP_SUFFIX);
+            byte[] content = ByteBuffer.allocate(HEADER_SIZE + body.length)
+                    .putLong(expiresAtMillis)
+                    .put(body)
+                    .array();
+            Files.write(tempFile, content);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            evict();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX)).forEach(files::add);
+        }
+
+        long totalSize = 0;
+        List<Entry> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                Entry entry = new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                entries.add(entry);
+                totalSize += entry.size;
+            } catch (NoSuchFileException ignored) {
+                // Removed concurrently
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+        for (Entry entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            Files.deleteIfExists(entry.file);
+            totalSize -= entry.size;
+        }
+    }
+
+    private Path fileOf(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        final Path file;
+        final long size;
+        final long lastAccess;
+
+        Entry(Path file, long size, long lastAccess) {
+            this.file = file;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import agh.cs.oop.airlyconsoleclient.metrics.Metrics;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Records time of converting response bodies by the delegate factory as "decode". As bodies are decoded while
+ * they are read, it includes receiving the part of the body which has not been buffered yet.
+ */
+class TimingConverterFactory extends Converter.Factory {
+
+    private final Converter.Factory delegate;
+    private final Metrics metrics;
+
+    TimingConverterFactory(Converter.Factory delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null) {
+            return null;
+        }
+        return body -> {
+            long start = System.nanoTime();
+            try {
+                return converter.convert(body);
+            } finally {
+                metrics.record("decode", System.nanoTime() - start);
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+}
@@ -0,0 +1,162 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Responses of Airly API recorded by {@link TrafficRecorder}, replayed by an API created with
+ * {@link AirlyApiFactory#setReplay}.
+ * <p>
+ * Responses to the same request are replayed in the recorded order; when they run out, the last one is repeated.
+ * Requests are matched by path and query only, so a log can be replayed with any base URL.
+ * <p>
+ * File format: magic "AIRT" (int), version (int), then records:
+ * <pre>
+ * start      long    nanoseconds from the beginning of the recording to the request
+ * duration   long    nanoseconds from the request to the complete response
+ * key        UTF     path and query of the request
+ * status     short
+ * message    UTF
+ * headers    short   count, followed by names and values (UTF)
+ * body       int     length, int length of the deflated body, deflated body
+ * </pre>
+ * A truncated last record (e.g. of an interrupted recording) is ignored.
+ */
+public class TrafficLog {
+
+    static final int MAGIC = 0x41495254; // "AIRT"
+    static final int VERSION = 1;
+
+    private final Map<String, List<Exchange>> exchanges;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final int size;
+
+    private TrafficLog(Map<String, List<Exchange>> exchanges, int size) {
+        this.exchanges = exchanges;
+        this.size = size;
+    }
+
+    public static TrafficLog read(Path path) throws IOException {
+        Map<String, List<Exchange>> exchanges = new HashMap<>();
+        int size = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a traffic log: " + path);
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                while (true) {
+                    Exchange exchange;
+                    try {
+                        exchange = readExchange(input, inflater);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    exchanges.computeIfAbsent(exchange.key, key -> new ArrayList<>()).add(exchange);
+                    size++;
+                }
+            } finally {
+                inflater.end();
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not a traffic log: " + path);
+        }
+
+        return new TrafficLog(exchanges, size);
+    }
+
+    private static Exchange readExchange(DataInputStream input, Inflater inflater) throws IOException {
+        long start = input.readLong();
+        long duration = input.readLong();
+        String key = input.readUTF();
+        int status = input.readShort();
+        String message = input.readUTF();
+
+        Headers.Builder headers = new Headers.Builder();
+        int headerCount = input.readShort();
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(input.readUTF(), input.readUTF());
+        }
+
+        byte[] body = new byte[input.readInt()];
+        byte[] deflated = new byte[input.readInt()];
+        input.readFully(deflated);
+        inflater.reset();
+        inflater.setInput(deflated);
+        try {
+            if (inflater.inflate(body) != body.length) {
+                throw new IOException("Corrupted body of a recorded response: " + key);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted body of a recorded response: " + key, e);
+        }
+
+        return new Exchange(key, start, duration, status, message, headers.build(), body);
+    }
+
+    /**
+     * @return number of recorded responses
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the next recorded response to the request, or null if there is none
+     */
+    synchronized @Nullable Exchange next(Request request) {
+        String key = keyOf(request);
+        List<Exchange> list = exchanges.get(key);
+        if (list == null) {
+            return null;
+        }
+        int position = positions.getOrDefault(key, 0);
+        positions.put(key, Math.min(position + 1, list.size() - 1));
+        return list.get(position);
+    }
+
+    static String keyOf(Request request) {
+        String query = request.url().encodedQuery();
+        return query != null ? request.url().encodedPath() + "?" + query : request.url().encodedPath();
+    }
+
+    /**
+     * A recorded response.
+     */
+    static class Exchange {
+        final String key;
+        final long startNanos;
+        final long durationNanos;
+        final int status;
+        final String message;
+        final Headers headers;
+        final byte[] body;
+
+        Exchange(String key, long startNanos, long durationNanos, int status, String message, Headers headers,
+                 byte[] body) {
+            this.key = key;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.status = status;
+            this.message = message;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * Appends responses of Airly API to a {@link TrafficLog} file. Each record is flushed when it is written, so
+ * an interrupted recording keeps all complete responses.
+ */
+public class TrafficRecorder implements Closeable {
+
+    private final DataOutputStream output;
+    private final Deflater deflater = new Deflater();
+    private final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    private final byte[] chunk = new byte[8192];
+    private final long startNanos = System.nanoTime();
+    private boolean closed;
+
+    /**
+     * Opens the log for appending, creating it if it does not exist.
+     */
+    public TrafficRecorder(Path path) throws IOException {
+        boolean empty = !Files.exists(path) || Files.size(path) == 0;
+        output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        if (empty) {
+            output.writeInt(TrafficLog.MAGIC);
+            output.writeInt(TrafficLog.VERSION);
+            output.flush();
+        }
+    }
+
+    /**
+     * @param requestNanos {@link System#nanoTime()} when the request was sent
+     * @param body         body of the response
+     * @throws IOException also if the recorder has been closed, e.g. before a late duplicate of a request ended
+     */
+    synchronized void record(Request request, Response response, byte[] body, long requestNanos) throws IOException {
+        if (closed) {
+            throw new IOException("The traffic log is closed");
+        }
+        long now = System.nanoTime();
+        output.writeLong(requestNanos - startNanos);
+        output.writeLong(now - requestNanos);
+        output.writeUTF(TrafficLog.keyOf(request));
+        output.writeShort(response.code());
+        output.writeUTF(response.message());
+
+        Headers headers = response.headers();
+        output.writeShort(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            output.writeUTF(headers.name(i));
+            output.writeUTF(headers.value(i));
+        }
+
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        deflated.reset();
+        while (!deflater.finished()) {
+            deflated.write(chunk, 0, deflater.deflate(chunk));
+        }
+        output.writeInt(body.length);
+        output.writeInt(deflated.size());
+        deflated.writeTo(output);
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deflater.end();
+        output.close();
+    }
+}
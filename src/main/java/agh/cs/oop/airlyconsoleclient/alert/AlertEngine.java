@@ -0,0 +1,144 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates alert rules incrementally over hourly measurements of many sensors.
+ * <p>
+ * Every sensor has a slot. Its history is fed with {@link #update}, which evaluates only the hours newer than
+ * the ones fed before, so the same history may be fed repeatedly. The state of all slots is kept in flat primitive
+ * arrays: the last hour, the number of consecutive hours matching each threshold rule, whether each rule is
+ * active, and a ring of the latest values for each rule of change. Evaluation does not allocate; the listener
+ * is called only when a rule becomes active or inactive, once per update with the latest hour.
+ * <p>
+ * A missing hour breaks a run of consecutive hours. Hours without data (pollution level -1) count as missing,
+ * because their values are decoded as zeros rather than NaN. Not thread-safe.
+ */
+public class AlertEngine {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final AlertRule[] rules;
+    private final AlertListener listener;
+
+    /** Hour (since the epoch) of the latest measurement fed to the slot */
+    private final long[] lastHours;
+    /** Per slot and rule: consecutive matching hours of a threshold rule */
+    private final int[] runs;
+    /** Per slot and rule: whether the rule matched the latest hour */
+    private final boolean[] active;
+    /** Per slot and rule: the value of the rule (the value of the field or its change) in the latest hour */
+    private final double[] values;
+    /** Per slot: values of the latest hours of the fields of rules of change, in rings of their durations */
+    private final double[] windows;
+    /** Offsets of the rings of the rules in the windows of a slot */
+    private final int[] windowOffsets;
+    private final int windowSize;
+    /** Whether rules were active before the current update, reused by every update */
+    private final boolean[] wasActive;
+
+    /**
+     * @param slots number of sensors
+     */
+    public AlertEngine(List<AlertRule> rules, int slots, AlertListener listener) {
+        this.rules = rules.toArray(new AlertRule[0]);
+        this.listener = listener;
+
+        int ruleCount = this.rules.length;
+        this.windowOffsets = new int[ruleCount];
+        int windowSize = 0;
+        for (int r = 0; r < ruleCount; r++) {
+            windowOffsets[r] = windowSize;
+            if (this.rules[r].kind != AlertRule.Kind.THRESHOLD) {
+                windowSize += this.rules[r].hours;
+            }
+        }
+        this.windowSize = windowSize;
+
+        this.lastHours = new long[slots];
+        Arrays.fill(lastHours, Long.MIN_VALUE);
+        this.runs = new int[slots * ruleCount];
+        this.active = new boolean[slots * ruleCount];
+        this.values = new double[slots * ruleCount];
+        this.windows = new double[slots * windowSize];
+        Arrays.fill(windows, Double.NaN);
+        this.wasActive = new boolean[ruleCount];
+    }
+
+    /**
+     * Evaluates the rules over the hours of the history newer than the ones fed to the slot before.
+     * Older hours and hours without data are skipped.
+     */
+    public void update(int slot, MeasurementColumns history) {
+        int ruleCount = rules.length;
+        int base = slot * ruleCount;
+        System.arraycopy(active, base, wasActive, 0, ruleCount);
+
+        long lastHour = lastHours[slot];
+        long[] fromTimes = history.getFromTimes();
+        int[] pollutionLevels = history.getPollutionLevel();
+        int lastRow = -1;
+        for (int row = 0; row < history.size(); row++) {
+            long hour = Math.floorDiv(fromTimes[row], HOUR_MILLIS);
+            if (hour <= lastHour || pollutionLevels[row] < 0) {
+                continue;
+            }
+            evaluate(slot, history, row, hour, lastHour);
+            lastHour = hour;
+            lastRow = row;
+        }
+        lastHours[slot] = lastHour;
+
+        if (lastRow < 0) {
+            return;
+        }
+        long time = history.getTillTimes()[lastRow];
+        for (int r = 0; r < ruleCount; r++) {
+            if (active[base + r] != wasActive[r]) {
+                listener.onAlert(slot, rules[r], active[base + r], time, values[base + r]);
+            }
+        }
+    }
+
+    private void evaluate(int slot, MeasurementColumns history, int row, long hour, long lastHour) {
+        int base = slot * rules.length;
+        // Hours since the previous measurement, 1 unless some are missing
+        long step = lastHour == Long.MIN_VALUE ? Long.MAX_VALUE : hour - lastHour;
+
+        for (int r = 0; r < rules.length; r++) {
+            AlertRule rule = rules[r];
+            double value = rule.field.get(history, row);
+            int i = base + r;
+
+            if (rule.kind == AlertRule.Kind.THRESHOLD) {
+                if (step != 1) {
+                    runs[i] = 0;
+                }
+                runs[i] = rule.matches(value) ? Math.min(runs[i] + 1, rule.hours) : 0;
+                values[i] = value;
+                active[i] = runs[i] >= rule.hours;
+            } else {
+                int ring = slot * windowSize + windowOffsets[r];
+                // Clear the values of the missing hours
+                if (step > rule.hours) {
+                    Arrays.fill(windows, ring, ring + rule.hours, Double.NaN);
+                } else {
+                    for (long missing = lastHour + 1; missing < hour; missing++) {
+                        windows[ring + (int) Math.floorMod(missing, (long) rule.hours)] = Double.NaN;
+                    }
+                }
+                int position = ring + (int) Math.floorMod(hour, (long) rule.hours);
+                double before = windows[position];
+                windows[position] = value;
+
+                double change = value - before;
+                values[i] = change;
+                active[i] = rule.matches(rule.kind == AlertRule.Kind.RISE ? change : -change);
+            }
+        }
+    }
+}
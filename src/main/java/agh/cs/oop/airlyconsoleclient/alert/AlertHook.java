@@ -0,0 +1,52 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.lang.System.err;
+
+/**
+ * Runs a shell command on every change of the state of an alert rule. The command is not waited for;
+ * it gets the details in environment variables:
+ * <pre>
+ * AIRLY_ALERT_STATE    "active" or "cleared"
+ * AIRLY_ALERT_TARGET   name of the sensor
+ * AIRLY_ALERT_RULE     the rule as written
+ * AIRLY_ALERT_FIELD    field of the rule
+ * AIRLY_ALERT_VALUE    value of the field, or its change for rules of change
+ * AIRLY_ALERT_TIME     end of the hour of the measurement (ISO 8601)
+ * </pre>
+ */
+public class AlertHook implements AlertListener {
+
+    private final String command;
+    private final List<String> names;
+
+    /**
+     * @param names names of the sensors, by slot
+     */
+    public AlertHook(String command, List<String> names) {
+        this.command = command;
+        this.names = names;
+    }
+
+    @Override
+    public void onAlert(int slot, AlertRule rule, boolean active, long time, double value) {
+        ProcessBuilder process = new ProcessBuilder("/bin/sh", "-c", command).inheritIO();
+        Map<String, String> environment = process.environment();
+        environment.put("AIRLY_ALERT_STATE", active ? "active" : "cleared");
+        environment.put("AIRLY_ALERT_TARGET", names.get(slot));
+        environment.put("AIRLY_ALERT_RULE", rule.toString());
+        environment.put("AIRLY_ALERT_FIELD", rule.getFieldName());
+        environment.put("AIRLY_ALERT_VALUE", String.format(Locale.ROOT, "%.3f", value));
+        environment.put("AIRLY_ALERT_TIME", Instant.ofEpochMilli(time).toString());
+        try {
+            process.start();
+        } catch (IOException e) {
+            err.println("Failed to run the alert command: " + e.getMessage());
+        }
+    }
+}
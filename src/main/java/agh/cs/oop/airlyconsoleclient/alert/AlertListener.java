@@ -0,0 +1,15 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+/**
+ * Receives changes of the state of alert rules from {@link AlertEngine}.
+ */
+public interface AlertListener {
+
+    /**
+     * @param slot   slot of the sensor
+     * @param active whether the rule became active, or inactive
+     * @param time   end of the hour of the measurement, in epoch millis
+     * @param value  value of the field in that hour, or its change for rules of change
+     */
+    void onAlert(int slot, AlertRule rule, boolean active, long time, double value);
+}
@@ -0,0 +1,39 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prints changes of the state of alert rules, one per line, e.g.
+ * "2018-01-20T15:00:00Z ALERT Sensor ID: 204: pm25 &gt; norm for 3h (pm25 81.2)".
+ */
+public class AlertPrinter implements AlertListener {
+
+    private final PrintStream out;
+    private final List<String> names;
+
+    /**
+     * @param names names of the sensors, by slot
+     */
+    public AlertPrinter(PrintStream out, List<String> names) {
+        this.out = out;
+        this.names = names;
+    }
+
+    @Override
+    public void onAlert(int slot, AlertRule rule, boolean active, long time, double value) {
+        out.println(Instant.ofEpochMilli(time) + " " + (active ? "ALERT " : "CLEARED ") + names.get(slot) + ": "
+                + rule + " (" + describeValue(rule, value) + ")");
+    }
+
+    static String describeValue(AlertRule rule, double value) {
+        if (rule.kind == AlertRule.Kind.THRESHOLD) {
+            return String.format(Locale.ROOT, rule.field == AlertRule.Field.LEVEL ? "%s %.0f" : "%s %.1f",
+                    rule.getFieldName(), value);
+        } else {
+            return String.format(Locale.ROOT, "%s %+.1f in %dh", rule.getFieldName(), value, rule.hours);
+        }
+    }
+}
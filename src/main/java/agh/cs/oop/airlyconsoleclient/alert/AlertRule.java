@@ -0,0 +1,203 @@
+package agh.cs.oop.airlyconsoleclient.alert;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.util.Locale;
+
+/**
+ * Condition on hourly measurements of a sensor, written as text:
+ * <pre>
+ * field op value [for N h]                threshold, reached by N consecutive hours (default 1)
+ * field rises|falls by value [in N h]     change between measurements N hours apart (default 1)
+ * </pre>
+ * where field is one of caqi, pm1, pm25, pm10, pressure, humidity, temperature, level (pollution level),
+ * op is one of &gt;, &gt;=, &lt;, &lt;=, and value is a number or 'norm' (of pm25 or pm10).
+ * For example "pm25 &gt; norm for 3h", "level &gt;= 5" or "pm10 rises by 30 in 2h".
+ */
+public class AlertRule {
+
+    /** Longest duration of a rule, which bounds the state kept per sensor */
+    static final int MAX_HOURS = 24 * 7;
+
+    enum Field {
+        CAQI, PM1, PM25, PM10, PRESSURE, HUMIDITY, TEMPERATURE, LEVEL;
+
+        /**
+         * @return value of the field in the row, which must have data (pollution level other than -1)
+         */
+        double get(MeasurementColumns columns, int row) {
+            switch (this) {
+                case CAQI:
+                    return columns.getAirQualityIndex()[row];
+                case PM1:
+                    return columns.getPm1()[row];
+                case PM25:
+                    return columns.getPm25()[row];
+                case PM10:
+                    return columns.getPm10()[row];
+                case PRESSURE:
+                    return columns.getPressure()[row];
+                case HUMIDITY:
+                    return columns.getHumidity()[row];
+                case TEMPERATURE:
+                    return columns.getTemperature()[row];
+                default:
+                    return columns.getPollutionLevel()[row];
+            }
+        }
+
+        String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    enum Kind {
+        /** The value compared to the threshold for a number of hours */
+        THRESHOLD,
+        /** Change of the value over a number of hours compared to the threshold */
+        RISE,
+        FALL
+    }
+
+    final String text;
+    final Field field;
+    final Kind kind;
+    /** Whether the value (or its change) must be greater than the threshold rather than less */
+    final boolean above;
+    /** Whether the value (or its change) may also be equal to the threshold */
+    final boolean inclusive;
+    final double threshold;
+    final int hours;
+
+    private AlertRule(String text, Field field, Kind kind, boolean above, boolean inclusive, double threshold,
+                      int hours) {
+        this.text = text;
+        this.field = field;
+        this.kind = kind;
+        this.above = above;
+        this.inclusive = inclusive;
+        this.threshold = threshold;
+        this.hours = hours;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a valid rule
+     */
+    public static AlertRule parse(String text) {
+        String[] words = text.trim().toLowerCase(Locale.ROOT)
+                .replaceAll("(>=|<=|>|<)", " $1 ")
+                .replaceAll("(\\d)\\s*h\\b", "$1h")
+                .trim()
+                .split("\\s+");
+        if (words.length < 3) {
+            throw new IllegalArgumentException("Invalid alert rule: " + text);
+        }
+
+        Field field = parseField(words[0], text);
+        Kind kind;
+        boolean above;
+        boolean inclusive;
+        int valueIndex;
+        String durationKeyword;
+        switch (words[1]) {
+            case "rises":
+            case "falls":
+                if (words.length < 4 || !words[2].equals("by")) {
+                    throw new IllegalArgumentException("Invalid alert rule: " + text);
+                }
+                kind = words[1].equals("rises") ? Kind.RISE : Kind.FALL;
+                above = true;
+                inclusive = true;
+                valueIndex = 3;
+                durationKeyword = "in";
+                break;
+            case ">":
+            case ">=":
+            case "<":
+            case "<=":
+                kind = Kind.THRESHOLD;
+                above = words[1].startsWith(">");
+                inclusive = words[1].endsWith("=");
+                valueIndex = 2;
+                durationKeyword = "for";
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid comparison in alert rule: " + text);
+        }
+
+        double threshold = parseValue(words[valueIndex], field, text);
+        int hours = 1;
+        if (words.length == valueIndex + 3 && words[valueIndex + 1].equals(durationKeyword)) {
+            hours = parseHours(words[valueIndex + 2], text);
+        } else if (words.length != valueIndex + 1) {
+            throw new IllegalArgumentException("Invalid alert rule: " + text);
+        }
+
+        return new AlertRule(text.trim(), field, kind, above, inclusive, threshold, hours);
+    }
+
+    private static Field parseField(String name, String text) {
+        for (Field field : Field.values()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field in alert rule: " + text);
+    }
+
+    private static double parseValue(String value, Field field, String text) {
+        if (value.equals("norm")) {
+            if (field == Field.PM25) {
+                return Measurement.PM25_NORM;
+            } else if (field == Field.PM10) {
+                return Measurement.PM10_NORM;
+            }
+            throw new IllegalArgumentException("Only pm25 and pm10 have a norm: " + text);
+        }
+        try {
+            double threshold = Double.parseDouble(value);
+            if (Double.isNaN(threshold)) {
+                throw new NumberFormatException();
+            }
+            return threshold;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value in alert rule: " + text);
+        }
+    }
+
+    private static int parseHours(String duration, String text) {
+        try {
+            int hours = Integer.parseInt(duration.endsWith("h") ? duration.substring(0, duration.length() - 1)
+                    : duration);
+            if (hours >= 1 && hours <= MAX_HOURS) {
+                return hours;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid duration in alert rule (1 to " + MAX_HOURS + " hours): " + text);
+    }
+
+    /**
+     * @param value value of the field, or its change for rules of change (negated for falls); NaN never matches
+     */
+    boolean matches(double value) {
+        if (above) {
+            return inclusive ? value >= threshold : value > threshold;
+        } else {
+            return inclusive ? value <= threshold : value < threshold;
+        }
+    }
+
+    /**
+     * @return name of the field the rule is about
+     */
+    public String getFieldName() {
+        return field.getName();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,45 @@
+package agh.cs.oop.airlyconsoleclient.geo;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of recently fetched measurements of map points, by geohash of their grid cell.
+ * An entry is valid until Airly is expected to publish newer measurements.
+ */
+public class MapPointIndex {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return measurements of the cell, or null if there are none or they are outdated
+     */
+    public @Nullable AllMeasurements get(String cell) {
+        Entry entry = entries.get(cell);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis < System.currentTimeMillis()) {
+            entries.remove(cell, entry);
+            return null;
+        }
+        return entry.measurements;
+    }
+
+    public void put(String cell, AllMeasurements measurements) {
+        entries.put(cell, new Entry(measurements, measurements.getExpirationMillis(System.currentTimeMillis())));
+    }
+
+    private static class Entry {
+        final AllMeasurements measurements;
+        final long expiresAtMillis;
+
+        Entry(AllMeasurements measurements, long expiresAtMillis) {
+            this.measurements = measurements;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
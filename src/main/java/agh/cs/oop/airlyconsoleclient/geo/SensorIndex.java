@@ -0,0 +1,446 @@
+package agh.cs.oop.airlyconsoleclient.geo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Locations of sensors in a KD-tree, answering nearest and within-radius queries locally.
+ * <p>
+ * Locations are kept as points on the unit sphere in 3D, so that the straight-line (chord) distance orders
+ * sensors the same way as the great-circle distance, also across the antimeridian and near the poles.
+ * The tree is implicit: the root of a range of the arrays is its middle element, which splits the range
+ * by the coordinate of its depth. The arrays in tree order are the whole index, so a saved index is read back
+ * without rebuilding.
+ * <p>
+ * File format: magic "AIRS" (int), version (int), count (int), then ids (int), latitudes and longitudes (double),
+ * all in tree order.
+ */
+public class SensorIndex {
+
+    /** Mean radius of the Earth in meters */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    private static final int MAGIC = 0x41495253; // "AIRS"
+    private static final int VERSION = 1;
+    private static final int DIMENSIONS = 3;
+
+    private final int[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    /** Points on the unit sphere, x, y and z of the sensor i at 3i, 3i + 1 and 3i + 2 */
+    private final double[] points;
+
+    /**
+     * @param ids ids, latitudes and longitudes of sensors, already in tree order
+     */
+    private SensorIndex(int[] ids, double[] latitudes, double[] longitudes) {
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.points = toPoints(latitudes, longitudes);
+    }
+
+    /**
+     * Builds the index of sensors given by arrays of the same length. The arrays are not modified.
+     */
+    public static SensorIndex build(int[] ids, double[] latitudes, double[] longitudes) {
+        double[] points = toPoints(latitudes, longitudes);
+        int[] order = new int[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        build(order, points, 0, order.length, 0);
+
+        int[] sortedIds = new int[ids.length];
+        double[] sortedLatitudes = new double[ids.length];
+        double[] sortedLongitudes = new double[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = ids[order[i]];
+            sortedLatitudes[i] = latitudes[order[i]];
+            sortedLongitudes[i] = longitudes[order[i]];
+        }
+        return new SensorIndex(sortedIds, sortedLatitudes, sortedLongitudes);
+    }
+
+    private static void build(int[] order, double[] points, int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(order, points, from, to, middle, axis);
+        build(order, points, from, middle, (axis + 1) % DIMENSIONS);
+        build(order, points, middle + 1, to, (axis + 1) % DIMENSIONS);
+    }
+
+    /**
+     * Reorders the range so that the element at the rank is in its sorted place, preceded by elements
+     * not greater and followed by elements not less than it by the coordinate (quickselect).
+     */
+    private static void select(int[] order, double[] points, int from, int to, int rank, int axis) {
+        int low = from;
+        int high = to - 1;
+        while (low < high) {
+            double pivot = points[order[(low + high) >>> 1] * DIMENSIONS + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (points[order[i] * DIMENSIONS + axis] < pivot) {
+                    i++;
+                }
+                while (points[order[j] * DIMENSIONS + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swapped = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swapped;
+                }
+            }
+            if (rank <= j) {
+                high = j;
+            } else if (rank >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a list of sensors, either a JSON array of sensors as returned by Airly API (objects with "id" and
+     * "location" with "latitude" and "longitude"), or lines "id,latitude,longitude" ('#' begins a comment line).
+     */
+    public static SensorIndex readList(Path path) throws IOException {
+        SensorList list = new SensorList();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            int first;
+            do {
+                reader.mark(1);
+                first = reader.read();
+            } while (first != -1 && Character.isWhitespace(first));
+            reader.reset();
+
+            if (first == '[') {
+                readJsonList(new JsonReader(reader), list);
+            } else {
+                readTextList(reader, list);
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid list of sensors: " + e.getMessage(), e);
+        }
+        return build(Arrays.copyOf(list.ids, list.size), Arrays.copyOf(list.latitudes, list.size),
+                Arrays.copyOf(list.longitudes, list.size));
+    }
+
+    private static void readJsonList(JsonReader reader, SensorList list) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Integer id = null;
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("id") && reader.peek() != JsonToken.NULL) {
+                    id = reader.nextInt();
+                } else if (name.equals("location") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String coordinate = reader.nextName();
+                        if (coordinate.equals("latitude") && reader.peek() == JsonToken.NUMBER) {
+                            latitude = reader.nextDouble();
+                        } else if (coordinate.equals("longitude") && reader.peek() == JsonToken.NUMBER) {
+                            longitude = reader.nextDouble();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Sensors without a known location cannot be found by it
+            if (id != null && !Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                list.add(id, latitude, longitude);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static void readTextList(BufferedReader reader, SensorList list) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 3) {
+                throw new NumberFormatException("Invalid sensor: " + line);
+            }
+            list.add(Integer.parseUnsignedInt(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim()));
+        }
+    }
+
+    public static SensorIndex read(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a sensor index: " + path);
+            }
+            int count = input.readInt();
+            int[] ids = new int[count];
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = input.readInt();
+            }
+            for (int i = 0; i < count; i++) {
+                latitudes[i] = input.readDouble();
+            }
+            for (int i = 0; i < count; i++) {
+                longitudes[i] = input.readDouble();
+            }
+            return new SensorIndex(ids, latitudes, longitudes);
+        } catch (EOFException e) {
+            throw new IOException("Not a sensor index: " + path);
+        }
+    }
+
+    /**
+     * Writes the index, replacing the file atomically.
+     */
+    public void write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(ids.length);
+            for (int id : ids) {
+                output.writeInt(id);
+            }
+            for (double latitude : latitudes) {
+                output.writeDouble(latitude);
+            }
+            for (double longitude : longitudes) {
+                output.writeDouble(longitude);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return number of sensors
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return latitude and longitude of the sensor, or null if it is not in the index
+     */
+    public @Nullable double[] locate(int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return new double[]{latitudes[i], longitudes[i]};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return ids of at most the count of sensors nearest to the location, nearest first
+     */
+    public int[] nearest(double latitude, double longitude, int count) {
+        return search(latitude, longitude, count, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param radius distance in meters
+     * @param limit  maximum number of returned sensors
+     * @return ids of the sensors within the distance from the location, nearest first
+     */
+    public int[] within(double latitude, double longitude, double radius, int limit) {
+        // Chord of the arc of the radius on the unit sphere
+        double chord = 2 * Math.sin(Math.min(radius / EARTH_RADIUS, Math.PI) / 2);
+        return search(latitude, longitude, limit, chord * chord);
+    }
+
+    private int[] search(double latitude, double longitude, int limit, double maxDistance) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        double[] query = new double[DIMENSIONS];
+        toPoint(latitude, longitude, query, 0);
+        Candidates candidates = new Candidates(Math.min(limit, ids.length), maxDistance);
+        search(0, ids.length, 0, query, candidates);
+
+        int[] result = new int[candidates.size];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = ids[candidates.poll()];
+        }
+        return result;
+    }
+
+    private void search(int from, int to, int axis, double[] query, Candidates candidates) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        double dx = query[0] - points[middle * DIMENSIONS];
+        double dy = query[1] - points[middle * DIMENSIONS + 1];
+        double dz = query[2] - points[middle * DIMENSIONS + 2];
+        candidates.offer(middle, dx * dx + dy * dy + dz * dz);
+
+        // The nearer half first, the other one only if it may contain a point nearer than the farthest candidate
+        double delta = query[axis] - points[middle * DIMENSIONS + axis];
+        int nextAxis = (axis + 1) % DIMENSIONS;
+        if (delta < 0) {
+            search(from, middle, nextAxis, query, candidates);
+            if (delta * delta <= candidates.bound()) {
+                search(middle + 1, to, nextAxis, query, candidates);
+            }
+        } else {
+            search(middle + 1, to, nextAxis, query, candidates);
+            if (delta * delta <= candidates.bound()) {
+                search(from, middle, nextAxis, query, candidates);
+            }
+        }
+    }
+
+    private static double[] toPoints(double[] latitudes, double[] longitudes) {
+        double[] points = new double[latitudes.length * DIMENSIONS];
+        for (int i = 0; i < latitudes.length; i++) {
+            toPoint(latitudes[i], longitudes[i], points, i * DIMENSIONS);
+        }
+        return points;
+    }
+
+    private static void toPoint(double latitude, double longitude, double[] points, int offset) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        points[offset] = Math.cos(phi) * Math.cos(lambda);
+        points[offset + 1] = Math.cos(phi) * Math.sin(lambda);
+        points[offset + 2] = Math.sin(phi);
+    }
+
+    /**
+     * Bounded max-heap of the nearest nodes found so far, by squared distance.
+     */
+    private static class Candidates {
+        final int[] nodes;
+        final double[] distances;
+        final double maxDistance;
+        int size;
+
+        Candidates(int capacity, double maxDistance) {
+            this.nodes = new int[capacity];
+            this.distances = new double[capacity];
+            this.maxDistance = maxDistance;
+        }
+
+        /**
+         * @return squared distance a node must not exceed to become a candidate
+         */
+        double bound() {
+            return size < nodes.length ? maxDistance : Math.min(maxDistance, distances[0]);
+        }
+
+        void offer(int node, double distance) {
+            if (distance > maxDistance) {
+                return;
+            }
+            if (size < nodes.length) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    nodes[i] = nodes[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                nodes[i] = node;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(node, distance);
+            }
+        }
+
+        /**
+         * Removes the farthest candidate.
+         */
+        int poll() {
+            int farthest = nodes[0];
+            size--;
+            if (size > 0) {
+                siftDown(nodes[size], distances[size]);
+            }
+            return farthest;
+        }
+
+        /**
+         * Puts the node in place of the root and restores the heap order.
+         */
+        private void siftDown(int node, double distance) {
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Sensors read from a list, in growable arrays.
+     */
+    private static class SensorList {
+        int[] ids = new int[64];
+        double[] latitudes = new double[64];
+        double[] longitudes = new double[64];
+        int size;
+
+        void add(int id, double latitude, double longitude) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+    }
+}
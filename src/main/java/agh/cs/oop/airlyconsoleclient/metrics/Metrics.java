@@ -0,0 +1,143 @@
+package agh.cs.oop.airlyconsoleclient.metrics;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of named timers ({@link LatencyHistogram}) and counters, which can be written
+ * as a human-readable table, in Prometheus text format or as JSON. Metrics are listed in order of creation.
+ */
+public class Metrics {
+
+    private static final String PREFIX = "airly_";
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p95", "p99", "p999"};
+
+    private final Map<String, LatencyHistogram> timers = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, AtomicLong> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @param name lowercase name with underscores, e.g. "parse_arguments"
+     */
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @param name lowercase name with underscores, e.g. "bytes_received"
+     */
+    public AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    public void record(String timer, long nanos) {
+        timer(timer).record(nanos);
+    }
+
+    public void increment(String counter, long delta) {
+        counter(counter).addAndGet(delta);
+    }
+
+    /**
+     * Writes a table of timers with their percentiles, followed by the counters.
+     */
+    public void writeText(Appendable output) throws IOException {
+        StringBuilder header = new StringBuilder(StringUtils.rightPad("Timer", 24))
+                .append(StringUtils.leftPad("count", 8));
+        for (String name : QUANTILE_NAMES) {
+            header.append(StringUtils.leftPad(name, 11));
+        }
+        header.append(StringUtils.leftPad("max", 11));
+        output.append(header).append('\n');
+
+        for (Map.Entry<String, LatencyHistogram> entry : snapshot(timers)) {
+            LatencyHistogram histogram = entry.getValue();
+            StringBuilder row = new StringBuilder(StringUtils.rightPad(entry.getKey(), 24))
+                    .append(StringUtils.leftPad(Long.toString(histogram.getCount()), 8));
+            for (double quantile : QUANTILES) {
+                row.append(StringUtils.leftPad(LatencyHistogram.format(histogram.getPercentile(quantile * 100)), 11));
+            }
+            row.append(StringUtils.leftPad(LatencyHistogram.format(histogram.getMax()), 11));
+            output.append(row).append('\n');
+        }
+
+        for (Map.Entry<String, AtomicLong> entry : snapshot(counters)) {
+            output.append(StringUtils.rightPad(entry.getKey(), 24))
+                    .append(StringUtils.leftPad(Long.toString(entry.getValue().get()), 8))
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Writes the metrics in Prometheus text exposition format: timers as summaries in seconds, counters as counters.
+     */
+    public void writePrometheus(Appendable output) throws IOException {
+        for (Map.Entry<String, LatencyHistogram> entry : snapshot(timers)) {
+            String name = PREFIX + entry.getKey() + "_seconds";
+            LatencyHistogram histogram = entry.getValue();
+
+            output.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                output.append(name).append("{quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                        .append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+            }
+            output.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+            output.append(name).append("_count ").append(Long.toString(histogram.getCount())).append('\n');
+        }
+
+        for (Map.Entry<String, AtomicLong> entry : snapshot(counters)) {
+            String name = PREFIX + entry.getKey() + "_total";
+            output.append("# TYPE ").append(name).append(" counter\n");
+            output.append(name).append(' ').append(Long.toString(entry.getValue().get())).append('\n');
+        }
+    }
+
+    /**
+     * Writes the metrics as a JSON object: {"timers": {name: {"count", "sum_seconds", "max_seconds",
+     * "p50_seconds", ...}}, "counters": {name: value}}.
+     */
+    public void writeJson(Appendable output) throws IOException {
+        output.append("{\"timers\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : snapshot(timers)) {
+            LatencyHistogram histogram = entry.getValue();
+            output.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{")
+                    .append("\"count\":").append(Long.toString(histogram.getCount()))
+                    .append(",\"sum_seconds\":").append(seconds(histogram.getSum()))
+                    .append(",\"max_seconds\":").append(seconds(histogram.getMax()));
+            for (int i = 0; i < QUANTILES.length; i++) {
+                output.append(",\"").append(QUANTILE_NAMES[i]).append("_seconds\":")
+                        .append(seconds(histogram.getPercentile(QUANTILES[i] * 100)));
+            }
+            output.append('}');
+            first = false;
+        }
+
+        output.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, AtomicLong> entry : snapshot(counters)) {
+            output.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":")
+                    .append(Long.toString(entry.getValue().get()));
+            first = false;
+        }
+        output.append("}}\n");
+    }
+
+    private static <T> List<Map.Entry<String, T>> snapshot(Map<String, T> map) {
+        synchronized (map) {
+            return new ArrayList<>(map.entrySet());
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,74 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes measurements as length-prefixed binary records, big-endian:
+ * <pre>
+ * length     int     number of the following bytes (97 in this version)
+ * kind       byte    0 - current measurement, 1 - history entry
+ * sensorId   int     -1 for a map point
+ * latitude   double  NaN for a sensor
+ * longitude  double  NaN for a sensor
+ * from       long    epoch millis, Long.MIN_VALUE if unknown (always for the current measurement)
+ * till       long    as above
+ * airQualityIndex, pm1, pm25, pm10, pressure, humidity, temperature   double
+ * pollutionLevel     int     -1 if unknown
+ * </pre>
+ * Readers should skip bytes beyond the fields they know, as later versions may append fields.
+ */
+public class BinaryWriter extends ChannelWriter {
+
+    private static final int RECORD_LENGTH = 1 + Integer.BYTES + 2 * Double.BYTES + 2 * Long.BYTES
+            + 7 * Double.BYTES + Integer.BYTES;
+
+    private static final byte KIND_CURRENT = 0;
+    private static final byte KIND_HISTORY = 1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    public BinaryWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    void writeCurrent(Target target, Measurement measurement) {
+        putHeader(KIND_CURRENT, target, NO_TIME, NO_TIME);
+        putValues(measurement.getAirQualityIndex(), measurement.getPm1(), measurement.getPm25(),
+                measurement.getPm10(), measurement.getPressure(), measurement.getHumidity(),
+                measurement.getTemperature(), measurement.getPollutionLevel());
+    }
+
+    @Override
+    void writeHistory(Target target, MeasurementColumns columns, int index) {
+        putHeader(KIND_HISTORY, target, columns.getFromTimes()[index], columns.getTillTimes()[index]);
+        putValues(columns.getAirQualityIndex()[index], columns.getPm1()[index], columns.getPm25()[index],
+                columns.getPm10()[index], columns.getPressure()[index], columns.getHumidity()[index],
+                columns.getTemperature()[index], columns.getPollutionLevel()[index]);
+    }
+
+    private void putHeader(byte kind, Target target, long from, long till) {
+        buffer.putInt(RECORD_LENGTH)
+                .put(kind)
+                .putInt(target.sensorId != null ? target.sensorId : -1)
+                .putDouble(target.latitude != null ? target.latitude : Double.NaN)
+                .putDouble(target.longitude != null ? target.longitude : Double.NaN)
+                .putLong(from)
+                .putLong(till);
+    }
+
+    private void putValues(double airQualityIndex, double pm1, double pm25, double pm10,
+                           double pressure, double humidity, double temperature, int pollutionLevel) {
+        buffer.putDouble(airQualityIndex)
+                .putDouble(pm1)
+                .putDouble(pm25)
+                .putDouble(pm10)
+                .putDouble(pressure)
+                .putDouble(humidity)
+                .putDouble(temperature)
+                .putInt(pollutionLevel);
+    }
+}
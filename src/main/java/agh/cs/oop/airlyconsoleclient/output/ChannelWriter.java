@@ -0,0 +1,177 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Base of the writers: records are encoded straight into a byte buffer, which is written to the channel
+ * when it fills up. Numbers and times are encoded as ASCII digits without creating strings.
+ */
+abstract class ChannelWriter implements MeasurementsWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Upper bound of the size of a single record */
+    static final int MAX_RECORD_SIZE = 1024;
+
+    /** Decimal places of measured values and of coordinates */
+    static final int VALUE_DECIMALS = 3;
+    static final int COORDINATE_DECIMALS = 6;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    /** Values with magnitude above this are written with {@link Double#toString(double)} */
+    private static final double MAX_FIXED_POINT = 1e12;
+
+    private final WritableByteChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+
+    ChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(Target target, AllMeasurements measurements, boolean history) throws IOException {
+        Measurement current = measurements.getCurrentMeasurements();
+        if (current != null && current.getPollutionLevel() != -1) {
+            ensureSpace();
+            writeCurrent(target, current);
+        }
+
+        if (history) {
+            MeasurementColumns columns = measurements.getHistoryColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                ensureSpace();
+                writeHistory(target, columns, i);
+            }
+        }
+    }
+
+    abstract void writeCurrent(Target target, Measurement measurement);
+
+    abstract void writeHistory(Target target, MeasurementColumns columns, int index);
+
+    private void ensureSpace() throws IOException {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    void putLong(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    /**
+     * Writes a finite value rounded to the number of decimal places (at most 6), without trailing zeros.
+     */
+    void putDecimal(double value, int decimals) {
+        if (Math.abs(value) >= MAX_FIXED_POINT) {
+            putAscii(Double.toString(value));
+            return;
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            buffer.put((byte) '-');
+        }
+        putLong(scaled / scale);
+
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            buffer.put((byte) '.');
+            for (long divisor = scale / 10; fraction != 0; divisor /= 10) {
+                buffer.put((byte) ('0' + fraction / divisor));
+                fraction %= divisor;
+            }
+        }
+    }
+
+    /**
+     * Writes epoch millis as ISO-8601 date-time in UTC, e.g. "2018-01-22T20:00:00Z".
+     */
+    void putTime(long epochMillis) {
+        long days = Math.floorDiv(epochMillis, 86_400_000L);
+        long millisOfDay = Math.floorMod(epochMillis, 86_400_000L);
+
+        // Civil date from days since 1970-01-01 (H. Hinnant's algorithm)
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        putPadded(year, 4);
+        buffer.put((byte) '-');
+        putPadded(month, 2);
+        buffer.put((byte) '-');
+        putPadded(day, 2);
+        buffer.put((byte) 'T');
+        putPadded(millisOfDay / 3_600_000, 2);
+        buffer.put((byte) ':');
+        putPadded(millisOfDay / 60_000 % 60, 2);
+        buffer.put((byte) ':');
+        putPadded(millisOfDay / 1000 % 60, 2);
+        if (millisOfDay % 1000 != 0) {
+            buffer.put((byte) '.');
+            putPadded(millisOfDay % 1000, 3);
+        }
+        buffer.put((byte) 'Z');
+    }
+
+    private void putPadded(long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                buffer.put((byte) '0');
+            }
+        }
+        putLong(value);
+    }
+}
@@ -0,0 +1,88 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementWithTime;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes measurements as CSV with a header line. Missing values (e.g. times of the current measurement,
+ * or coordinates of a sensor) are empty.
+ */
+public class CsvWriter extends ChannelWriter {
+
+    private static final String HEADER = "kind,sensor_id,latitude,longitude,from,till,"
+            + "air_quality_index,pm1,pm25,pm10,pressure,humidity,temperature,pollution_level\n";
+
+    public CsvWriter(WritableByteChannel channel) {
+        super(channel);
+        putAscii(HEADER);
+    }
+
+    @Override
+    void writeCurrent(Target target, Measurement measurement) {
+        putAscii("current,");
+        putTarget(target);
+        putAscii(",,,");
+        putValues(measurement.getAirQualityIndex(), measurement.getPm1(), measurement.getPm25(),
+                measurement.getPm10(), measurement.getPressure(), measurement.getHumidity(),
+                measurement.getTemperature(), measurement.getPollutionLevel());
+    }
+
+    @Override
+    void writeHistory(Target target, MeasurementColumns columns, int index) {
+        putAscii("history,");
+        putTarget(target);
+        buffer.put((byte) ',');
+        putOptionalTime(columns.getFromTimes()[index]);
+        buffer.put((byte) ',');
+        putOptionalTime(columns.getTillTimes()[index]);
+        buffer.put((byte) ',');
+        putValues(columns.getAirQualityIndex()[index], columns.getPm1()[index], columns.getPm25()[index],
+                columns.getPm10()[index], columns.getPressure()[index], columns.getHumidity()[index],
+                columns.getTemperature()[index], columns.getPollutionLevel()[index]);
+    }
+
+    private void putTarget(Target target) {
+        if (target.sensorId != null) {
+            putLong(target.sensorId);
+            putAscii(",,");
+        } else {
+            buffer.put((byte) ',');
+            //noinspection ConstantConditions
+            putDecimal(target.latitude, COORDINATE_DECIMALS);
+            buffer.put((byte) ',');
+            putDecimal(target.longitude, COORDINATE_DECIMALS);
+        }
+    }
+
+    private void putOptionalTime(long time) {
+        if (time != MeasurementWithTime.NO_TIME) {
+            putTime(time);
+        }
+    }
+
+    private void putValues(double airQualityIndex, double pm1, double pm25, double pm10,
+                           double pressure, double humidity, double temperature, int pollutionLevel) {
+        putValue(airQualityIndex);
+        putValue(pm1);
+        putValue(pm25);
+        putValue(pm10);
+        putValue(pressure);
+        putValue(humidity);
+        putValue(temperature);
+        if (pollutionLevel != -1) {
+            putLong(pollutionLevel);
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private void putValue(double value) {
+        if (Double.isFinite(value)) {
+            putDecimal(value, VALUE_DECIMALS);
+        }
+        buffer.put((byte) ',');
+    }
+}
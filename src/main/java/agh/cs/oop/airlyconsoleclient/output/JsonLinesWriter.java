@@ -0,0 +1,84 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementWithTime;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes measurements as JSON Lines: one object per line, with the field names of Airly API, e.g.
+ * {"kind":"history","sensorId":1234,"fromDateTime":"2018-01-22T19:00:00Z","tillDateTime":"2018-01-22T20:00:00Z",
+ * "airQualityIndex":42.5,...,"pollutionLevel":2}. Missing fields are omitted.
+ */
+public class JsonLinesWriter extends ChannelWriter {
+
+    public JsonLinesWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    void writeCurrent(Target target, Measurement measurement) {
+        putAscii("{\"kind\":\"current\"");
+        putTarget(target);
+        putValues(measurement.getAirQualityIndex(), measurement.getPm1(), measurement.getPm25(),
+                measurement.getPm10(), measurement.getPressure(), measurement.getHumidity(),
+                measurement.getTemperature(), measurement.getPollutionLevel());
+    }
+
+    @Override
+    void writeHistory(Target target, MeasurementColumns columns, int index) {
+        putAscii("{\"kind\":\"history\"");
+        putTarget(target);
+        putTimeField(",\"fromDateTime\":\"", columns.getFromTimes()[index]);
+        putTimeField(",\"tillDateTime\":\"", columns.getTillTimes()[index]);
+        putValues(columns.getAirQualityIndex()[index], columns.getPm1()[index], columns.getPm25()[index],
+                columns.getPm10()[index], columns.getPressure()[index], columns.getHumidity()[index],
+                columns.getTemperature()[index], columns.getPollutionLevel()[index]);
+    }
+
+    private void putTarget(Target target) {
+        if (target.sensorId != null) {
+            putAscii(",\"sensorId\":");
+            putLong(target.sensorId);
+        } else {
+            putAscii(",\"latitude\":");
+            //noinspection ConstantConditions
+            putDecimal(target.latitude, COORDINATE_DECIMALS);
+            putAscii(",\"longitude\":");
+            putDecimal(target.longitude, COORDINATE_DECIMALS);
+        }
+    }
+
+    private void putTimeField(String prefix, long time) {
+        if (time != MeasurementWithTime.NO_TIME) {
+            putAscii(prefix);
+            putTime(time);
+            buffer.put((byte) '"');
+        }
+    }
+
+    private void putValues(double airQualityIndex, double pm1, double pm25, double pm10,
+                           double pressure, double humidity, double temperature, int pollutionLevel) {
+        putValueField(",\"airQualityIndex\":", airQualityIndex);
+        putValueField(",\"pm1\":", pm1);
+        putValueField(",\"pm25\":", pm25);
+        putValueField(",\"pm10\":", pm10);
+        putValueField(",\"pressure\":", pressure);
+        putValueField(",\"humidity\":", humidity);
+        putValueField(",\"temperature\":", temperature);
+        if (pollutionLevel != -1) {
+            putAscii(",\"pollutionLevel\":");
+            putLong(pollutionLevel);
+        }
+        putAscii("}\n");
+    }
+
+    private void putValueField(String prefix, double value) {
+        if (Double.isFinite(value)) {
+            putAscii(prefix);
+            putDecimal(value, VALUE_DECIMALS);
+        }
+    }
+}
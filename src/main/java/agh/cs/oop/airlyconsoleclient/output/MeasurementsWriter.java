@@ -0,0 +1,21 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes measurements in a machine-readable format, as one record per measurement:
+ * the current measurement (if any) and, optionally, the history entries.
+ */
+public interface MeasurementsWriter extends Closeable {
+
+    void write(Target target, AllMeasurements measurements, boolean history) throws IOException;
+
+    /**
+     * Writes the buffered records to the underlying channel.
+     */
+    void flush() throws IOException;
+}
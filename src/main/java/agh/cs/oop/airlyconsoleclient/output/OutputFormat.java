@@ -0,0 +1,47 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+public enum OutputFormat {
+    /** Tables and charts for a terminal, printed by {@link agh.cs.oop.airlyconsoleclient.AsciiPrinter} */
+    TEXT,
+    CSV,
+    JSONL,
+    BINARY;
+
+    /**
+     * @return the format with the name (case-insensitive), or null if there is none
+     */
+    public static @Nullable OutputFormat parse(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return writer of the format, or null for {@link #TEXT}
+     */
+    public @Nullable MeasurementsWriter createWriter(WritableByteChannel channel) {
+        switch (this) {
+            case CSV:
+                return new CsvWriter(channel);
+            case JSONL:
+                return new JsonLinesWriter(channel);
+            case BINARY:
+                return new BinaryWriter(channel);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,94 @@
+package agh.cs.oop.airlyconsoleclient.stats;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementWithTime;
+
+/**
+ * Statistics of every measured quantity of a history, computed in a single pass over the columns.
+ * <p>
+ * Entries are consumed in order of their beginning time; {@link #update} skips the ones that are not newer
+ * than the last consumed entry, so the same statistics can be updated with a history that has grown since.
+ * Entries without measurements (pollution level -1) are skipped, as their values are not known.
+ */
+public class HistoryStatistics {
+
+    /** Moving averages are computed over a day of hourly entries */
+    public static final int MOVING_AVERAGE_WINDOW = 24;
+
+    private final RunningStatistics airQualityIndex = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics pm1 = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics pm25 = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics pm10 = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics pressure = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics humidity = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private final RunningStatistics temperature = new RunningStatistics(MOVING_AVERAGE_WINDOW);
+    private long lastFromTime = Long.MIN_VALUE;
+
+    public static HistoryStatistics of(MeasurementColumns history) {
+        HistoryStatistics statistics = new HistoryStatistics();
+        statistics.update(history);
+        return statistics;
+    }
+
+    /**
+     * Adds the entries of the history which are newer than the entries added so far.
+     */
+    public void update(MeasurementColumns history) {
+        long[] fromTimes = history.getFromTimes();
+        int[] pollutionLevels = history.getPollutionLevel();
+        double[] airQualityIndexColumn = history.getAirQualityIndex();
+        double[] pm1Column = history.getPm1();
+        double[] pm25Column = history.getPm25();
+        double[] pm10Column = history.getPm10();
+        double[] pressureColumn = history.getPressure();
+        double[] humidityColumn = history.getHumidity();
+        double[] temperatureColumn = history.getTemperature();
+
+        for (int i = 0; i < history.size(); i++) {
+            if (fromTimes[i] != MeasurementWithTime.NO_TIME) {
+                if (fromTimes[i] <= lastFromTime) {
+                    continue;
+                }
+                lastFromTime = fromTimes[i];
+            }
+            if (pollutionLevels[i] == -1) {
+                continue;
+            }
+            airQualityIndex.add(airQualityIndexColumn[i]);
+            pm1.add(pm1Column[i]);
+            pm25.add(pm25Column[i]);
+            pm10.add(pm10Column[i]);
+            pressure.add(pressureColumn[i]);
+            humidity.add(humidityColumn[i]);
+            temperature.add(temperatureColumn[i]);
+        }
+    }
+
+    public RunningStatistics getAirQualityIndex() {
+        return airQualityIndex;
+    }
+
+    public RunningStatistics getPm1() {
+        return pm1;
+    }
+
+    public RunningStatistics getPm25() {
+        return pm25;
+    }
+
+    public RunningStatistics getPm10() {
+        return pm10;
+    }
+
+    public RunningStatistics getPressure() {
+        return pressure;
+    }
+
+    public RunningStatistics getHumidity() {
+        return humidity;
+    }
+
+    public RunningStatistics getTemperature() {
+        return temperature;
+    }
+}
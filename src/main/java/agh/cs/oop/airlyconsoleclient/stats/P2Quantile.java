@@ -0,0 +1,105 @@
+package agh.cs.oop.airlyconsoleclient.stats;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of a quantile in constant memory, using the P² algorithm (R. Jain, I. Chlamtac, 1985).
+ * <p>
+ * Five markers track the minimum, the maximum, the quantile and the quantiles halfway to the extremes. After each
+ * observation the markers are moved towards their desired positions and their heights are adjusted using
+ * piecewise-parabolic interpolation. Until five values are observed the quantile is exact.
+ */
+class P2Quantile {
+
+    private final double p;
+    private final double[] heights = new double[5];
+    private final int[] positions = {0, 1, 2, 3, 4};
+    private final double[] desired;
+    private final double[] increments;
+    private int count;
+
+    /**
+     * @param p quantile in range [0, 1]
+     */
+    P2Quantile(double p) {
+        this.p = p;
+        this.desired = new double[]{0, 2 * p, 4 * p, 2 + 2 * p, 4};
+        this.increments = new double[]{0, p / 2, p, (1 + p) / 2, 1};
+    }
+
+    void add(double value) {
+        if (count < 5) {
+            heights[count++] = value;
+            if (count == 5) {
+                Arrays.sort(heights);
+            }
+            return;
+        }
+        count++;
+
+        // Find the cell of the value, extending the extremes if needed
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[4]) {
+            heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+
+        for (int i = cell + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        // Adjust the middle markers which are off their desired positions by one or more
+        for (int i = 1; i < 4; i++) {
+            double offset = desired[i] - positions[i];
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int step = offset > 0 ? 1 : -1;
+                double height = parabolic(i, step);
+                if (heights[i - 1] < height && height < heights[i + 1]) {
+                    heights[i] = height;
+                } else {
+                    heights[i] = linear(i, step);
+                }
+                positions[i] += step;
+            }
+        }
+    }
+
+    /**
+     * @return the estimate, or NaN if nothing was observed
+     */
+    double get() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count >= 5) {
+            return heights[2];
+        }
+        double[] sorted = Arrays.copyOf(heights, count);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(p * count) - 1)];
+    }
+
+    private double parabolic(int i, int step) {
+        double below = positions[i] - positions[i - 1];
+        double above = positions[i + 1] - positions[i];
+        return heights[i] + (double) step / (positions[i + 1] - positions[i - 1])
+                * ((below + step) * (heights[i + 1] - heights[i]) / above
+                + (above - step) * (heights[i] - heights[i - 1]) / below);
+    }
+
+    private double linear(int i, int step) {
+        return heights[i] + step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+    }
+}
@@ -0,0 +1,115 @@
+package agh.cs.oop.airlyconsoleclient.stats;
+
+/**
+ * Summary statistics of a series of values, updated in constant time and memory as values are added:
+ * minimum, maximum, mean and standard deviation (Welford's algorithm), estimated percentiles and the moving
+ * average of the latest values.
+ */
+public class RunningStatistics {
+
+    /** Percentiles which are estimated, see {@link #getPercentile(double)} */
+    public static final double[] PERCENTILES = {50, 90, 95};
+
+    private final P2Quantile[] quantiles = new P2Quantile[PERCENTILES.length];
+    private final double[] window;
+    private int windowStart;
+    private int windowSize;
+    private double windowSum;
+
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double mean;
+    private double squaredDeviations;
+
+    /**
+     * @param movingAverageWindow number of latest values the moving average is computed over
+     */
+    public RunningStatistics(int movingAverageWindow) {
+        this.window = new double[movingAverageWindow];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            quantiles[i] = new P2Quantile(PERCENTILES[i] / 100);
+        }
+    }
+
+    /**
+     * Adds a value. NaN is ignored.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        count++;
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+
+        for (P2Quantile quantile : quantiles) {
+            quantile.add(value);
+        }
+
+        if (windowSize < window.length) {
+            window[(windowStart + windowSize++) % window.length] = value;
+        } else {
+            windowSum -= window[windowStart];
+            window[windowStart] = value;
+            windowStart = (windowStart + 1) % window.length;
+        }
+        windowSum += value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** @return the minimum, or NaN if there are no values */
+    public double getMin() {
+        return min;
+    }
+
+    /** @return the maximum, or NaN if there are no values */
+    public double getMax() {
+        return max;
+    }
+
+    /** @return the mean, or NaN if there are no values */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /** @return the sample standard deviation, or NaN if there are less than two values */
+    public double getStandardDeviation() {
+        return count > 1 ? Math.sqrt(squaredDeviations / (count - 1)) : Double.NaN;
+    }
+
+    /**
+     * @param percentile one of {@link #PERCENTILES}
+     * @return estimate of the percentile, or NaN if there are no values
+     */
+    public double getPercentile(double percentile) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            if (PERCENTILES[i] == percentile) {
+                return quantiles[i].get();
+            }
+        }
+        throw new IllegalArgumentException("Percentile is not estimated: " + percentile);
+    }
+
+    /** @return mean of the latest values in the moving average window, or NaN if there are no values */
+    public double getMovingAverage() {
+        return windowSize > 0 ? windowSum / windowSize : Double.NaN;
+    }
+
+    public int getMovingAverageWindow() {
+        return window.length;
+    }
+}
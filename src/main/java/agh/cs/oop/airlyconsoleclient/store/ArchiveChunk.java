@@ -0,0 +1,328 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compressed block of up to {@link #MAX_ROWS} consecutive measurements of a series in a history archive,
+ * encoded column by column as in Facebook's Gorilla:
+ * <ul>
+ * <li>times (beginnings and ends of measurement periods) as the first time followed by deltas of deltas, which
+ * are zero for regular hourly measurements and take a single bit:
+ * '0' for zero, '10' + 7 bits, '110' + 9 bits, '1110' + 12 bits or '1111' + 64 bits (two's complement);</li>
+ * <li>doubles as the first value followed by XORs with the previous value: '0' if equal, '10' + the meaningful
+ * bits if they fit into the window of the previous XOR, '11' + leading zeros (5 bits) + length of the meaningful
+ * bits minus 1 (6 bits) + the meaningful bits otherwise;</li>
+ * <li>pollution levels as the first level (32 bits) followed by '0' if unchanged or '1' + the level.</li>
+ * </ul>
+ * <pre>
+ * rows       int
+ * lengths    int[10]  lengths of the encoded columns in bytes
+ * columns    from, till, airQualityIndex, pm1, pm25, pm10, pressure, humidity, temperature, pollutionLevel
+ * </pre>
+ * Columns are padded to whole bytes, so every column can be decoded on its own.
+ */
+class ArchiveChunk {
+
+    static final int MAX_ROWS = 1024;
+
+    private static final int COLUMN_COUNT = 10;
+    private static final int DOUBLE_COLUMN_COUNT = 7;
+    private static final int HEADER_SIZE = Integer.BYTES * (1 + COLUMN_COUNT);
+    private static final int MAX_LEADING_ZEROS = 31;
+
+    private final long[] fromTimes = new long[MAX_ROWS];
+    private final long[] tillTimes = new long[MAX_ROWS];
+    private final double[][] values = new double[DOUBLE_COLUMN_COUNT][MAX_ROWS];
+    private final int[] levels = new int[MAX_ROWS];
+
+    /**
+     * Encodes the rows of the columns at the selected indices.
+     *
+     * @param rows indices of rows ordered by their beginning time, from offset to offset + count
+     */
+    static byte[] encode(MeasurementColumns columns, int[] rows, int offset, int count) {
+        BitWriter[] encoded = new BitWriter[COLUMN_COUNT];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            encoded[c] = new BitWriter(count);
+        }
+        encodeTimes(encoded[0], columns.getFromTimes(), rows, offset, count);
+        encodeTimes(encoded[1], columns.getTillTimes(), rows, offset, count);
+        encodeValues(encoded[2], columns.getAirQualityIndex(), rows, offset, count);
+        encodeValues(encoded[3], columns.getPm1(), rows, offset, count);
+        encodeValues(encoded[4], columns.getPm25(), rows, offset, count);
+        encodeValues(encoded[5], columns.getPm10(), rows, offset, count);
+        encodeValues(encoded[6], columns.getPressure(), rows, offset, count);
+        encodeValues(encoded[7], columns.getHumidity(), rows, offset, count);
+        encodeValues(encoded[8], columns.getTemperature(), rows, offset, count);
+        encodeLevels(encoded[9], columns.getPollutionLevel(), rows, offset, count);
+
+        byte[][] bytes = new byte[COLUMN_COUNT][];
+        int size = HEADER_SIZE;
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            bytes[c] = encoded[c].toByteArray();
+            size += bytes[c].length;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(size).putInt(count);
+        for (byte[] column : bytes) {
+            chunk.putInt(column.length);
+        }
+        for (byte[] column : bytes) {
+            chunk.put(column);
+        }
+        return chunk.array();
+    }
+
+    /**
+     * Decodes the measurements of the chunk which began in the range [fromTime, tillTime) and adds them to the
+     * columns. Decoding stops at the first measurement past the range. Reuses the buffers of this object.
+     *
+     * @return number of added measurements
+     * @throws IOException if the chunk is corrupted
+     */
+    int decode(byte[] chunk, long fromTime, long tillTime, MeasurementColumns out) throws IOException {
+        try {
+            ByteBuffer header = ByteBuffer.wrap(chunk);
+            int rows = header.getInt();
+            if (rows < 0 || rows > MAX_ROWS) {
+                throw new IOException("Corrupted chunk of a history archive");
+            }
+            int[] offsets = new int[COLUMN_COUNT + 1];
+            offsets[0] = HEADER_SIZE;
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                offsets[c + 1] = offsets[c] + header.getInt();
+            }
+            if (offsets[COLUMN_COUNT] > chunk.length || offsets[COLUMN_COUNT] < HEADER_SIZE) {
+                throw new IOException("Corrupted chunk of a history archive");
+            }
+
+            // Find the range in the times first, to decode the other columns only up to its end
+            BitReader times = new BitReader(chunk, offsets[0], offsets[1] - offsets[0]);
+            int start = 0;
+            int end = 0;
+            long previous = 0;
+            long previousDelta = 0;
+            for (; end < rows; end++) {
+                long time = end == 0 ? times.read(Long.SIZE) : previous + (previousDelta += readDeltaOfDelta(times));
+                if (time >= tillTime) {
+                    break;
+                }
+                fromTimes[end] = time;
+                previous = time;
+                if (time < fromTime) {
+                    start = end + 1;
+                }
+            }
+            if (start >= end) {
+                return 0;
+            }
+
+            decodeTimes(new BitReader(chunk, offsets[1], offsets[2] - offsets[1]), tillTimes, end);
+            for (int c = 0; c < DOUBLE_COLUMN_COUNT; c++) {
+                decodeValues(new BitReader(chunk, offsets[c + 2], offsets[c + 3] - offsets[c + 2]), values[c], end);
+            }
+            decodeLevels(new BitReader(chunk, offsets[9], offsets[10] - offsets[9]), levels, end);
+
+            for (int row = start; row < end; row++) {
+                out.add(fromTimes[row], tillTimes[row], values[0][row], values[1][row], values[2][row],
+                        values[3][row], values[4][row], values[5][row], values[6][row], levels[row]);
+            }
+            return end - start;
+        } catch (IllegalStateException | BufferUnderflowException e) {
+            throw new IOException("Corrupted chunk of a history archive", e);
+        }
+    }
+
+    private static void encodeTimes(BitWriter out, long[] times, int[] rows, int offset, int count) {
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long time = times[rows[offset + i]];
+            if (i == 0) {
+                out.write(time, Long.SIZE);
+            } else {
+                long delta = time - previous;
+                writeDeltaOfDelta(out, delta - previousDelta);
+                previousDelta = delta;
+            }
+            previous = time;
+        }
+    }
+
+    private static void decodeTimes(BitReader in, long[] times, int count) {
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            previous = i == 0 ? in.read(Long.SIZE) : previous + (previousDelta += readDeltaOfDelta(in));
+            times[i] = previous;
+        }
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long value) {
+        if (value == 0) {
+            out.writeBit(false);
+        } else if (fits(value, 7)) {
+            out.write(0b10, 2);
+            out.write(value, 7);
+        } else if (fits(value, 9)) {
+            out.write(0b110, 3);
+            out.write(value, 9);
+        } else if (fits(value, 12)) {
+            out.write(0b1110, 4);
+            out.write(value, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(value, Long.SIZE);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        } else if (!in.readBit()) {
+            return signExtend(in.read(7), 7);
+        } else if (!in.readBit()) {
+            return signExtend(in.read(9), 9);
+        } else if (!in.readBit()) {
+            return signExtend(in.read(12), 12);
+        } else {
+            return in.read(Long.SIZE);
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (Long.SIZE - bits)) >> (Long.SIZE - bits);
+    }
+
+    private static void encodeValues(BitWriter out, double[] values, int[] rows, int offset, int count) {
+        long previous = 0;
+        int leading = Integer.MAX_VALUE;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(values[rows[offset + i]]);
+            if (i == 0) {
+                out.write(bits, Long.SIZE);
+            } else {
+                long xor = bits ^ previous;
+                if (xor == 0) {
+                    out.writeBit(false);
+                } else {
+                    int newLeading = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+                    int newTrailing = Long.numberOfTrailingZeros(xor);
+                    if (newLeading >= leading && newTrailing >= trailing) {
+                        out.write(0b10, 2);
+                        out.write(xor >>> trailing, Long.SIZE - leading - trailing);
+                    } else {
+                        int length = Long.SIZE - newLeading - newTrailing;
+                        out.write(0b11, 2);
+                        out.write(newLeading, 5);
+                        out.write(length - 1, 6);
+                        out.write(xor >>> newTrailing, length);
+                        leading = newLeading;
+                        trailing = newTrailing;
+                    }
+                }
+            }
+            previous = bits;
+        }
+    }
+
+    private static void decodeValues(BitReader in, double[] values, int count) {
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = in.read(Long.SIZE);
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    trailing = Long.SIZE - leading - ((int) in.read(6) + 1);
+                    if (trailing < 0) {
+                        throw new IllegalStateException("Invalid length of a value");
+                    }
+                }
+                previous ^= in.read(Long.SIZE - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    private static void encodeLevels(BitWriter out, int[] levels, int[] rows, int offset, int count) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int level = levels[rows[offset + i]];
+            if (i == 0) {
+                out.write(level, Integer.SIZE);
+            } else if (level == previous) {
+                out.writeBit(false);
+            } else {
+                out.writeBit(true);
+                out.write(level, Integer.SIZE);
+            }
+            previous = level;
+        }
+    }
+
+    private static void decodeLevels(BitReader in, int[] levels, int count) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || in.readBit()) {
+                previous = (int) in.read(Integer.SIZE);
+            }
+            levels[i] = previous;
+        }
+    }
+
+    /**
+     * Entry of the index of a history archive, describing a chunk.
+     * <pre>
+     * key        UTF     key of the series
+     * rows       int
+     * first      long    beginning time of the first measurement
+     * last       long    beginning time of the last measurement
+     * offset     long    position of the chunk in the file
+     * length     int     length of the chunk in bytes
+     * </pre>
+     */
+    static class Entry {
+        final String key;
+        final int rows;
+        final long firstFromTime;
+        final long lastFromTime;
+        final long offset;
+        final int length;
+
+        Entry(String key, int rows, long firstFromTime, long lastFromTime, long offset, int length) {
+            this.key = key;
+            this.rows = rows;
+            this.firstFromTime = firstFromTime;
+            this.lastFromTime = lastFromTime;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        static Entry read(DataInput input) throws IOException {
+            return new Entry(input.readUTF(), input.readInt(), input.readLong(), input.readLong(), input.readLong(),
+                    input.readInt());
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeUTF(key);
+            output.writeInt(rows);
+            output.writeLong(firstFromTime);
+            output.writeLong(lastFromTime);
+            output.writeLong(offset);
+            output.writeInt(length);
+        }
+    }
+}
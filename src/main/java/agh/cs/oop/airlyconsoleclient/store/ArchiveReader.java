@@ -0,0 +1,129 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a history archive written by {@link ArchiveWriter}.
+ * <p>
+ * Only the index is read when the archive is opened. A query reads and decompresses only the chunks which
+ * overlap its range, and decoding of a chunk stops at the end of the range.
+ */
+public class ArchiveReader implements HistoryReader, Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    /** Chunks of each series, ordered by time */
+    private final Map<String, List<ArchiveChunk.Entry>> index;
+    private final ArchiveChunk decoder = new ArchiveChunk();
+
+    private ArchiveReader(Path path, FileChannel channel, Map<String, List<ArchiveChunk.Entry>> index) {
+        this.path = path;
+        this.channel = channel;
+        this.index = index;
+    }
+
+    public static ArchiveReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ArchiveReader(path, channel, readIndex(channel, path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static Map<String, List<ArchiveChunk.Entry>> readIndex(FileChannel channel, Path path)
+            throws IOException {
+        long size = channel.size();
+        if (size < ArchiveWriter.HEADER_SIZE + Integer.BYTES + ArchiveWriter.TRAILER_SIZE) {
+            throw new IOException("Not a history archive: " + path);
+        }
+        ByteBuffer header = readBytes(channel, 0, ArchiveWriter.HEADER_SIZE);
+        ByteBuffer trailer = readBytes(channel, size - ArchiveWriter.TRAILER_SIZE, ArchiveWriter.TRAILER_SIZE);
+        long indexOffset = trailer.getLong();
+        if (header.getInt() != ArchiveWriter.MAGIC || header.getInt() != ArchiveWriter.VERSION
+                || trailer.getInt() != ArchiveWriter.MAGIC
+                || indexOffset < ArchiveWriter.HEADER_SIZE || indexOffset > size - ArchiveWriter.TRAILER_SIZE) {
+            throw new IOException("Not a history archive: " + path);
+        }
+
+        int indexLength = (int) (size - ArchiveWriter.TRAILER_SIZE - indexOffset);
+        ByteBuffer indexBytes = readBytes(channel, indexOffset, indexLength);
+        Map<String, List<ArchiveChunk.Entry>> index = new LinkedHashMap<>();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(indexBytes.array()))) {
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                ArchiveChunk.Entry entry = ArchiveChunk.Entry.read(input);
+                if (entry.offset < ArchiveWriter.HEADER_SIZE || entry.length < 0
+                        || entry.offset + entry.length > indexOffset) {
+                    throw new IOException("Corrupted index of a history archive: " + path);
+                }
+                index.computeIfAbsent(entry.key, key -> new ArrayList<>()).add(entry);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Corrupted index of a history archive: " + path, e);
+        }
+        return index;
+    }
+
+    private static ByteBuffer readBytes(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return keys of the series in the archive, in the order they were written
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    @Override
+    public synchronized MeasurementColumns read(String key, long fromTime, long tillTime) throws IOException {
+        List<ArchiveChunk.Entry> chunks = new ArrayList<>();
+        int capacity = 0;
+        for (ArchiveChunk.Entry entry : index.getOrDefault(key, Collections.emptyList())) {
+            if (entry.lastFromTime >= fromTime && entry.firstFromTime < tillTime) {
+                chunks.add(entry);
+                capacity += entry.rows;
+            }
+        }
+
+        MeasurementColumns columns = new MeasurementColumns(capacity);
+        for (ArchiveChunk.Entry entry : chunks) {
+            try {
+                decoder.decode(readBytes(channel, entry.offset, entry.length).array(), fromTime, tillTime, columns);
+            } catch (IOException e) {
+                throw new IOException(e.getMessage() + ": " + path, e);
+            }
+        }
+        return columns.trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
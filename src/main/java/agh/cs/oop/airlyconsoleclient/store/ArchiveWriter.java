@@ -0,0 +1,116 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes measurement history of many series into a compressed archive, read by {@link ArchiveReader}.
+ * <p>
+ * Measurements are written in compressed chunks ({@link ArchiveChunk}) of up to 1024 measurements of a series,
+ * followed by an index of the chunks, so that a reader seeks only to the chunks of the requested range.
+ * The archive is written to a temporary file which replaces the target file when the writer is closed.
+ * <pre>
+ * header     magic "AIRA" (int), version (int)
+ * chunks
+ * index      count (int), entries ({@link ArchiveChunk.Entry})
+ * trailer    position of the index (long), magic (int)
+ * </pre>
+ */
+public class ArchiveWriter implements Closeable {
+
+    static final int MAGIC = 0x41495241; // "AIRA"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final Path tempFile;
+    private final DataOutputStream output;
+    private long position = HEADER_SIZE;
+    private final List<ArchiveChunk.Entry> index = new ArrayList<>();
+    /** Beginning time of the last written measurement of each series */
+    private final Map<String, Long> lastFromTimes = new HashMap<>();
+
+    public ArchiveWriter(Path path) throws IOException {
+        this.path = path;
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Appends the measurements of the series which are newer than the ones written before.
+     *
+     * @return number of written measurements
+     */
+    public int write(String key, MeasurementColumns columns) throws IOException {
+        // Select rows to write, keeping the series ordered even if the columns are not
+        long lastFrom = lastFromTimes.getOrDefault(key, Long.MIN_VALUE);
+        long[] from = columns.getFromTimes();
+        int[] selected = new int[columns.size()];
+        int selectedCount = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (from[i] > lastFrom) {
+                selected[selectedCount++] = i;
+                lastFrom = from[i];
+            }
+        }
+
+        for (int offset = 0; offset < selectedCount; offset += ArchiveChunk.MAX_ROWS) {
+            int count = Math.min(ArchiveChunk.MAX_ROWS, selectedCount - offset);
+            byte[] chunk = ArchiveChunk.encode(columns, selected, offset, count);
+            output.write(chunk);
+            index.add(new ArchiveChunk.Entry(key, count, from[selected[offset]], from[selected[offset + count - 1]],
+                    position, chunk.length));
+            position += chunk.length;
+        }
+        lastFromTimes.put(key, lastFrom);
+        return selectedCount;
+    }
+
+    /**
+     * @return number of bytes written so far, without the index
+     */
+    public long size() {
+        return position;
+    }
+
+    /**
+     * Writes the index and replaces the target file with the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            output.writeInt(index.size());
+            for (ArchiveChunk.Entry entry : index) {
+                entry.write(output);
+            }
+            output.writeLong(position);
+            output.writeInt(MAGIC);
+            output.close();
+        } catch (IOException e) {
+            try {
+                output.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,57 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+/**
+ * Reads a range of bytes written by {@link BitWriter} as a stream of bits.
+ */
+class BitReader {
+
+    private final byte[] bytes;
+    private int position;
+    private final int end;
+    /** Pending bits, in the lowest {@link #bufferBits} bits */
+    private long buffer;
+    private int bufferBits;
+
+    BitReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    boolean readBit() {
+        if (bufferBits == 0) {
+            fill();
+        }
+        bufferBits--;
+        return ((buffer >>> bufferBits) & 1) != 0;
+    }
+
+    /**
+     * @param bits number of bits, 1 to 64
+     * @throws IllegalStateException if the stream ends before
+     */
+    long read(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            if (bufferBits == 0) {
+                fill();
+            }
+            int count = Math.min(bits, bufferBits);
+            bufferBits -= count;
+            value = (count == Long.SIZE ? 0 : value << count) | ((buffer >>> bufferBits) & BitWriter.mask(count));
+            bits -= count;
+        }
+        return value;
+    }
+
+    private void fill() {
+        if (position == end) {
+            throw new IllegalStateException("Unexpected end of bits");
+        }
+        buffer = 0;
+        while (bufferBits <= Long.SIZE - Byte.SIZE && position < end) {
+            buffer = (buffer << Byte.SIZE) | (bytes[position++] & 0xff);
+            bufferBits += Byte.SIZE;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import java.util.Arrays;
+
+/**
+ * Growable stream of bits, written most significant first into big-endian bytes.
+ */
+class BitWriter {
+
+    private byte[] bytes;
+    private int size;
+    /** Pending bits, aligned to the most significant bit */
+    private long buffer;
+    private int bufferBits;
+
+    BitWriter(int capacity) {
+        bytes = new byte[Math.max(capacity, Long.BYTES)];
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the lowest bits of the value.
+     *
+     * @param bits number of bits, 1 to 64
+     */
+    void write(long value, int bits) {
+        int free = Long.SIZE - bufferBits;
+        if (bits > free) {
+            write(value >>> (bits - free), free);
+            bits -= free;
+            free = Long.SIZE;
+        }
+        buffer |= (value & mask(bits)) << (free - bits);
+        bufferBits += bits;
+        if (bufferBits == Long.SIZE) {
+            flushBuffer(Long.BYTES);
+        }
+    }
+
+    /**
+     * Pads the stream with zeros to a whole byte.
+     *
+     * @return the written bytes
+     */
+    byte[] toByteArray() {
+        if (bufferBits > 0) {
+            flushBuffer((bufferBits + Byte.SIZE - 1) / Byte.SIZE);
+        }
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void flushBuffer(int byteCount) {
+        if (size + Long.BYTES > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        for (int i = 0; i < byteCount; i++) {
+            bytes[size++] = (byte) (buffer >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        }
+        buffer = 0;
+        bufferBits = 0;
+    }
+
+    static long mask(int bits) {
+        return bits == Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+}
@@ -0,0 +1,208 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only file of measurements of a single sensor or map point, accessed through memory mapping.
+ * <p>
+ * Rows are stored in blocks of {@link #BLOCK_ROWS}, column by column within a block, so a range of a column
+ * is copied into an array in bulk. Rows are ordered by their beginning time: a row is appended only if it is
+ * newer than the last one, which also drops duplicates.
+ * <p>
+ * The row count in the header is written and flushed only after the rows themselves are flushed, so after
+ * a crash the file contains only complete rows (a partially written row is overwritten by the next append).
+ *
+ * <pre>
+ * header: magic (int), version (int), block rows (int), padding (int), row count (long)
+ * block:  from[BLOCK_ROWS] (long), till[] (long), airQualityIndex[] (double), pm1[], pm25[], pm10[],
+ *         pressure[], humidity[], temperature[] (double), pollutionLevel[] (int)
+ * </pre>
+ */
+class HistoryFile {
+
+    private static final int MAGIC = 0x41495248; // "AIRH"
+    private static final int VERSION = 1;
+    private static final int BLOCK_ROWS = 1024;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int FROM_COLUMN = 0;
+    private static final int TILL_COLUMN = FROM_COLUMN + BLOCK_ROWS * Long.BYTES;
+    private static final int DOUBLE_COLUMNS = TILL_COLUMN + BLOCK_ROWS * Long.BYTES;
+    private static final int DOUBLE_COLUMN_COUNT = 7;
+    private static final int LEVEL_COLUMN = DOUBLE_COLUMNS + DOUBLE_COLUMN_COUNT * BLOCK_ROWS * Double.BYTES;
+    private static final int BLOCK_SIZE = LEVEL_COLUMN + BLOCK_ROWS * Integer.BYTES;
+
+    private HistoryFile() {
+    }
+
+    /**
+     * Appends the measurements newer than the last stored one.
+     *
+     * @return number of appended rows
+     */
+    @SuppressWarnings("try") // The lock is held for the whole block
+    static int append(Path path, MeasurementColumns columns) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+
+            long count = 0;
+            long lastFrom = Long.MIN_VALUE;
+            if (channel.size() >= HEADER_SIZE) {
+                MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                checkHeader(file, path);
+                count = file.getLong(COUNT_OFFSET);
+                if (count > 0) {
+                    lastFrom = file.getLong(fromOffset(count - 1));
+                }
+            }
+
+            // Select rows to append, keeping the file ordered even if the history is not
+            long[] from = columns.getFromTimes();
+            int[] selected = new int[columns.size()];
+            int selectedCount = 0;
+            for (int i = 0; i < columns.size(); i++) {
+                if (from[i] > lastFrom) {
+                    selected[selectedCount++] = i;
+                    lastFrom = from[i];
+                }
+            }
+            if (selectedCount == 0) {
+                return 0;
+            }
+
+            long newCount = count + selectedCount;
+            long size = blockOffset((newCount - 1) / BLOCK_ROWS + 1);
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            if (count == 0) {
+                file.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, BLOCK_ROWS).putLong(COUNT_OFFSET, 0);
+            }
+            for (int i = 0; i < selectedCount; i++) {
+                writeRow(file, count + i, columns, selected[i]);
+            }
+            file.force();
+
+            file.putLong(COUNT_OFFSET, newCount);
+            file.force();
+
+            return selectedCount;
+        }
+    }
+
+    /**
+     * Reads measurements which began in the range [fromTime, tillTime).
+     */
+    static MeasurementColumns read(Path path, long fromTime, long tillTime) throws IOException {
+        if (!Files.exists(path)) {
+            return new MeasurementColumns(0);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return new MeasurementColumns(0);
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(file, path);
+            long count = file.getLong(COUNT_OFFSET);
+
+            long start = lowerBound(file, count, fromTime);
+            long end = lowerBound(file, count, tillTime);
+            int size = (int) Math.max(0, end - start);
+
+            long[] from = new long[size];
+            long[] till = new long[size];
+            double[][] values = new double[DOUBLE_COLUMN_COUNT][size];
+            int[] levels = new int[size];
+
+            // Copy ranges of the columns block by block
+            int copied = 0;
+            while (copied < size) {
+                long row = start + copied;
+                int length = (int) Math.min(size - copied, BLOCK_ROWS - row % BLOCK_ROWS);
+
+                slice(file, fromOffset(row)).asLongBuffer().get(from, copied, length);
+                slice(file, rowOffset(row, TILL_COLUMN, Long.BYTES)).asLongBuffer().get(till, copied, length);
+                for (int c = 0; c < DOUBLE_COLUMN_COUNT; c++) {
+                    slice(file, rowOffset(row, doubleColumn(c), Double.BYTES))
+                            .asDoubleBuffer().get(values[c], copied, length);
+                }
+                slice(file, rowOffset(row, LEVEL_COLUMN, Integer.BYTES)).asIntBuffer().get(levels, copied, length);
+
+                copied += length;
+            }
+
+            return new MeasurementColumns(from, till, values[0], values[1], values[2], values[3],
+                    values[4], values[5], values[6], levels);
+        }
+    }
+
+    private static void writeRow(ByteBuffer file, long row, MeasurementColumns columns, int index) {
+        file.putLong(fromOffset(row), columns.getFromTimes()[index]);
+        file.putLong(rowOffset(row, TILL_COLUMN, Long.BYTES), columns.getTillTimes()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(0), Double.BYTES), columns.getAirQualityIndex()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(1), Double.BYTES), columns.getPm1()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(2), Double.BYTES), columns.getPm25()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(3), Double.BYTES), columns.getPm10()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(4), Double.BYTES), columns.getPressure()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(5), Double.BYTES), columns.getHumidity()[index]);
+        file.putDouble(rowOffset(row, doubleColumn(6), Double.BYTES), columns.getTemperature()[index]);
+        file.putInt(rowOffset(row, LEVEL_COLUMN, Integer.BYTES), columns.getPollutionLevel()[index]);
+    }
+
+    /**
+     * @return index of the first row which began at or after the time
+     */
+    private static long lowerBound(ByteBuffer file, long count, long time) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (file.getLong(fromOffset(middle)) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, int offset) {
+        ByteBuffer duplicate = file.duplicate();
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    private static void checkHeader(ByteBuffer header, Path path) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != BLOCK_ROWS) {
+            throw new IOException("Not a history file: " + path);
+        }
+    }
+
+    private static int fromOffset(long row) {
+        return rowOffset(row, FROM_COLUMN, Long.BYTES);
+    }
+
+    private static int rowOffset(long row, int column, int valueSize) {
+        return (int) (blockOffset(row / BLOCK_ROWS) + column + (row % BLOCK_ROWS) * valueSize);
+    }
+
+    private static long blockOffset(long blockIndex) {
+        return HEADER_SIZE + blockIndex * BLOCK_SIZE;
+    }
+
+    private static int doubleColumn(int column) {
+        return DOUBLE_COLUMNS + column * BLOCK_ROWS * Double.BYTES;
+    }
+}
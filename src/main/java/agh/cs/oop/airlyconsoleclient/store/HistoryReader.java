@@ -0,0 +1,17 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.IOException;
+
+/**
+ * Source of stored measurement history, in series identified by keys of sensors or map points.
+ */
+public interface HistoryReader {
+
+    /**
+     * Reads the stored measurements of the series which began in the range [fromTime, tillTime), in epoch millis,
+     * ordered by their beginning time. Returned columns are {@link MeasurementColumns#trim() trimmed}.
+     */
+    MeasurementColumns read(String key, long fromTime, long tillTime) throws IOException;
+}
@@ -0,0 +1,57 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Local store of measurement history, which keeps more of it than the 24 hours returned by Airly API.
+ * Every sensor or map point has its own {@link HistoryFile}, named after its key.
+ */
+public class HistoryStore implements HistoryReader {
+
+    private static final String FILE_SUFFIX = ".hist";
+
+    private final Path directory;
+
+    public HistoryStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the default store directory: '$XDG_DATA_HOME/airly-console-client/history'
+     * or '~/.local/share/airly-console-client/history'.
+     */
+    public static Path defaultDirectory() {
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        Path base = dataHome != null && !dataHome.isEmpty()
+                ? Paths.get(dataHome)
+                : Paths.get(System.getProperty("user.home"), ".local", "share");
+        return base.resolve("airly-console-client").resolve("history");
+    }
+
+    /**
+     * Appends the measurements which are newer than the stored ones.
+     *
+     * @return number of stored measurements
+     */
+    public int append(String key, MeasurementColumns columns) throws IOException {
+        if (columns.size() == 0) {
+            return 0;
+        }
+        Files.createDirectories(directory);
+        return HistoryFile.append(fileOf(key), columns);
+    }
+
+    @Override
+    public MeasurementColumns read(String key, long fromTime, long tillTime) throws IOException {
+        return HistoryFile.read(fileOf(key), fromTime, tillTime);
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+}
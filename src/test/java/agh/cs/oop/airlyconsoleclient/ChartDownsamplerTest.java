@@ -0,0 +1,82 @@
+package agh.cs.oop.airlyconsoleclient;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChartDownsamplerTest {
+
+    @Test
+    public void keepsAllPointsOfShortSeries() {
+        double[] values = {3, 1, 4, 1, 5};
+
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ChartDownsampler.largestTriangleThreeBuckets(values, 5));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ChartDownsampler.largestTriangleThreeBuckets(values, 10));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ChartDownsampler.largestTriangleThreeBuckets(values, 2));
+        assertArrayEquals(new int[0], ChartDownsampler.largestTriangleThreeBuckets(new double[0], 3));
+    }
+
+    @Test
+    public void keepsTheExtremesOfBuckets() {
+        // Buckets {1, 2}, {3, 4} and {5, 6}
+        double[] values = {0, 1, 9, -5, 0, 2, 0, 0};
+
+        assertArrayEquals(new int[]{0, 2, 3, 5, 7}, ChartDownsampler.largestTriangleThreeBuckets(values, 5));
+    }
+
+    @Test
+    public void selectsAPointOfEveryBucket() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int size = 3 + random.nextInt(2000);
+            int count = 3 + random.nextInt(size - 2);
+            double[] values = new double[size];
+            for (int j = 0; j < size; j++) {
+                values[j] = random.nextGaussian();
+            }
+
+            int[] selected = ChartDownsampler.largestTriangleThreeBuckets(values, count);
+
+            assertEquals(Math.min(size, count), selected.length);
+            assertEquals(0, selected[0]);
+            assertEquals(size - 1, selected[selected.length - 1]);
+            if (count < size) {
+                double bucketSize = (double) (size - 2) / (count - 2);
+                for (int bucket = 0; bucket < count - 2; bucket++) {
+                    int index = selected[bucket + 1];
+                    assertTrue(index >= (int) (bucket * bucketSize) + 1);
+                    assertTrue(index < (int) ((bucket + 1) * bucketSize) + 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void preservesPeaksWhichAveragingFlattens() {
+        // An hour of smog in a month of clean air
+        double[] values = new double[24 * 30];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 10 + Math.sin(i / 5.0);
+        }
+        values[400] = 250;
+        values[555] = -40;
+
+        int[] selected = ChartDownsampler.largestTriangleThreeBuckets(values, 80);
+
+        assertTrue(contains(selected, 400));
+        assertTrue(contains(selected, 555));
+    }
+
+    private static boolean contains(int[] array, int value) {
+        for (int element : array) {
+            if (element == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
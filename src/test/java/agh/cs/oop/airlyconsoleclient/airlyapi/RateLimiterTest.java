@@ -0,0 +1,130 @@
+package agh.cs.oop.airlyconsoleclient.airlyapi;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void grantsTokensToInteractiveRequestsFirst() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter();
+        // A token per second, none left, paused for a second
+        limiter.onResponse(response(429, "60", "0", "1"));
+
+        List<RateLimiter.Priority> granted = Collections.synchronizedList(new ArrayList<>());
+        Thread background = acquireInThread(limiter, RateLimiter.Priority.BACKGROUND, granted);
+        awaitWaiting(background);
+        Thread interactive = acquireInThread(limiter, RateLimiter.Priority.INTERACTIVE, granted);
+        interactive.join();
+        background.join();
+
+        assertEquals(Arrays.asList(RateLimiter.Priority.INTERACTIVE, RateLimiter.Priority.BACKGROUND), granted);
+    }
+
+    @Test
+    public void pausesForRetryAfter() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter();
+        long start = System.nanoTime();
+        limiter.onResponse(response(429, "6000", null, "2"));
+
+        assertFalse(limiter.hasSpareTokens());
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        assertTrue(System.nanoTime() - start >= 2 * SECOND);
+    }
+
+    @Test
+    public void backsOffWithoutRetryAfter() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter();
+        long start = System.nanoTime();
+        limiter.onResponse(response(429, "6000", null, null));
+
+        assertFalse(limiter.hasSpareTokens());
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        assertTrue(System.nanoTime() - start >= SECOND);
+
+        // The delay doubles with consecutive rejections
+        start = System.nanoTime();
+        limiter.onResponse(response(429, "6000", null, null));
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        assertTrue(System.nanoTime() - start >= 2 * SECOND);
+
+        // An accepted request resets it
+        limiter.onResponse(response(200, "6000", null, null));
+        start = System.nanoTime();
+        limiter.onResponse(response(429, "6000", null, null));
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= SECOND && elapsed < 2 * SECOND);
+    }
+
+    @Test
+    public void takesTheQuotaFromHeaders() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter();
+        limiter.onResponse(response(200, "6000", "1", null));
+
+        assertTrue(limiter.hasSpareTokens());
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        assertFalse(limiter.hasSpareTokens());
+        // A token per 10 ms
+        long start = System.nanoTime();
+        limiter.acquire(RateLimiter.Priority.INTERACTIVE);
+        assertTrue(System.nanoTime() - start < SECOND);
+    }
+
+    @Test
+    public void sharesLimitersOfAnApiKey() {
+        assertSame(AirlyApiFactory.getRateLimiter("key"), AirlyApiFactory.getRateLimiter("key"));
+        assertTrue(AirlyApiFactory.getRateLimiter("key") != AirlyApiFactory.getRateLimiter("other key"));
+    }
+
+    private static Thread acquireInThread(RateLimiter limiter, RateLimiter.Priority priority,
+                                          List<RateLimiter.Priority> granted) {
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire(priority);
+                granted.add(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.TIMED_WAITING && thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static Response response(int code, String limit, String remaining, String retryAfter) {
+        Response.Builder response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 429 ? "Too Many Requests" : "OK")
+                .header("X-RateLimit-Limit-minute", limit);
+        if (remaining != null) {
+            response.header("X-RateLimit-Remaining-minute", remaining);
+        }
+        if (retryAfter != null) {
+            response.header("Retry-After", retryAfter);
+        }
+        return response.build();
+    }
+}
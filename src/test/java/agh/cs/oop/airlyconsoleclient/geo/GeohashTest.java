@@ -0,0 +1,66 @@
+package agh.cs.oop.airlyconsoleclient.geo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeohashTest {
+
+    @Test
+    public void encodesKnownLocations() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", Geohash.encode(42.6, -5.6, 5));
+    }
+
+    @Test
+    public void encodesPrefixesOfTheFullHash() {
+        String full = Geohash.encode(50.0614, 19.9366, Geohash.MAX_PRECISION);
+        for (int precision = 1; precision < Geohash.MAX_PRECISION; precision++) {
+            assertEquals(full.substring(0, precision), Geohash.encode(50.0614, 19.9366, precision));
+        }
+    }
+
+    @Test
+    public void encodesTheEdgesOfTheWorld() {
+        assertEquals("00000", Geohash.encode(-90, -180, 5));
+        assertEquals("zzzzz", Geohash.encode(90, 180, 5));
+        assertEquals("s0000", Geohash.encode(0, 0, 5));
+    }
+
+    @Test
+    public void decodesTheCenterOfTheCell() {
+        assertArrayEquals(new double[]{-67.5, -157.5}, Geohash.decodeCenter("0"), 0);
+        assertArrayEquals(new double[]{0, 0}, Geohash.decodeCenter(""), 0);
+        assertArrayEquals(new double[]{42.60498046875, -5.60302734375}, Geohash.decodeCenter("ezs42"), 0);
+    }
+
+    @Test
+    public void decodesCellsContainingTheLocations() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = -90 + 180 * random.nextDouble();
+            double longitude = -180 + 360 * random.nextDouble();
+            int precision = 1 + random.nextInt(Geohash.MAX_PRECISION);
+
+            String hash = Geohash.encode(latitude, longitude, precision);
+            double[] center = Geohash.decodeCenter(hash);
+
+            // Cells of 5 bits per character, alternating from longitude
+            int longitudeBits = (5 * precision + 1) / 2;
+            int latitudeBits = 5 * precision / 2;
+            assertTrue(Math.abs(center[0] - latitude) <= 90 / Math.pow(2, latitudeBits));
+            assertTrue(Math.abs(center[1] - longitude) <= 180 / Math.pow(2, longitudeBits));
+            assertEquals(hash, Geohash.encode(center[0], center[1], precision));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidCharacters() {
+        // No 'a', 'i', 'l' and 'o' in the alphabet
+        Geohash.decodeCenter("u2a");
+    }
+}
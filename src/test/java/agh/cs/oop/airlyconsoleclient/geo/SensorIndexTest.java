@@ -0,0 +1,225 @@
+package agh.cs.oop.airlyconsoleclient.geo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SensorIndexTest {
+
+    /** Tolerance of distances in meters, for rounding errors of the chord and the haversine formula */
+    private static final double TOLERANCE = 1e-3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsNearestSensorsLikeBruteForce() {
+        Random random = new Random(1);
+        Sensors sensors = Sensors.random(random, 2000);
+        SensorIndex index = SensorIndex.build(sensors.ids, sensors.latitudes, sensors.longitudes);
+
+        for (int i = 0; i < 200; i++) {
+            double[] query = randomLocation(random);
+            int count = 1 + random.nextInt(20);
+
+            int[] found = index.nearest(query[0], query[1], count);
+
+            int[] expected = sensors.byDistance(query[0], query[1]);
+            assertEquals(count, found.length);
+            for (int rank = 0; rank < count; rank++) {
+                assertEquals("rank " + rank + " of the nearest to " + Arrays.toString(query),
+                        sensors.distance(expected[rank], query[0], query[1]),
+                        sensors.distance(found[rank], query[0], query[1]), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void findsSensorsWithinRadiusLikeBruteForce() {
+        Random random = new Random(2);
+        Sensors sensors = Sensors.random(random, 2000);
+        SensorIndex index = SensorIndex.build(sensors.ids, sensors.latitudes, sensors.longitudes);
+
+        for (int i = 0; i < 200; i++) {
+            double[] query = randomLocation(random);
+            double radius = Math.pow(10, 2 + random.nextDouble() * 5); // 100 m to 10 000 km
+            int limit = random.nextInt(4) == 0 ? 5 : Integer.MAX_VALUE;
+
+            int[] found = index.within(query[0], query[1], radius, limit);
+
+            int[] expected = IntStream.of(sensors.byDistance(query[0], query[1]))
+                    .filter(id -> sensors.distance(id, query[0], query[1]) <= radius)
+                    .limit(limit)
+                    .toArray();
+            String message = "within " + radius + " m of " + Arrays.toString(query);
+            assertEquals(message, expected.length, found.length);
+            for (int rank = 0; rank < found.length; rank++) {
+                assertEquals(message, sensors.distance(expected[rank], query[0], query[1]),
+                        sensors.distance(found[rank], query[0], query[1]), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void findsSensorsAcrossTheAntimeridianAndThePoles() {
+        int[] ids = {1, 2, 3, 4, 5};
+        double[] latitudes = {0, 0, 89.99, 89.99, 50};
+        double[] longitudes = {179.999, -179.999, 0, 180, 20};
+        SensorIndex index = SensorIndex.build(ids, latitudes, longitudes);
+
+        assertArrayEquals(new int[]{2, 1}, index.nearest(0, -179.9999, 2));
+        assertArrayEquals(new int[]{1, 2}, index.within(0, 179.9999, 1000, 10));
+        assertEquals(2, index.within(90, 0, 2000, 10).length);
+        assertArrayEquals(new int[]{5}, index.within(50, 20, 0, 10));
+    }
+
+    @Test
+    public void findsSensorsAtTheSameLocation() {
+        SensorIndex index = SensorIndex.build(new int[]{7, 8, 9}, new double[]{50, 50, 51},
+                new double[]{20, 20, 20});
+
+        int[] nearest = index.nearest(50, 20, 2);
+        Arrays.sort(nearest);
+        assertArrayEquals(new int[]{7, 8}, nearest);
+    }
+
+    @Test
+    public void returnsAllSensorsIfThereAreFewer() {
+        SensorIndex index = SensorIndex.build(new int[]{1, 2}, new double[]{50, 51}, new double[]{20, 20});
+
+        assertArrayEquals(new int[]{1, 2}, index.nearest(49, 20, 10));
+        assertArrayEquals(new int[0], index.nearest(49, 20, 0));
+        assertArrayEquals(new int[0], SensorIndex.build(new int[0], new double[0], new double[0])
+                .nearest(49, 20, 10));
+    }
+
+    @Test
+    public void readsWrittenIndex() throws IOException {
+        Random random = new Random(3);
+        Sensors sensors = Sensors.random(random, 1000);
+        SensorIndex index = SensorIndex.build(sensors.ids, sensors.latitudes, sensors.longitudes);
+        Path path = folder.getRoot().toPath().resolve("sensors.idx");
+
+        index.write(path);
+        SensorIndex read = SensorIndex.read(path);
+
+        assertEquals(index.size(), read.size());
+        for (int i = 0; i < 100; i++) {
+            double[] query = randomLocation(random);
+            assertArrayEquals(index.nearest(query[0], query[1], 10), read.nearest(query[0], query[1], 10));
+        }
+        for (int i = 0; i < sensors.ids.length; i++) {
+            assertArrayEquals(new double[]{sensors.latitudes[i], sensors.longitudes[i]},
+                    read.locate(sensors.ids[i]), 0);
+        }
+        assertNull(read.locate(-1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, "1,50.06,19.94\n".getBytes(StandardCharsets.UTF_8));
+
+        SensorIndex.read(path);
+    }
+
+    @Test
+    public void readsListsOfSensors() throws IOException {
+        Path text = folder.newFile().toPath();
+        Files.write(text, ("# id,latitude,longitude\n"
+                + "204, 50.062006, 19.940984\n"
+                + "\n"
+                + "820,50.0577,19.9262\n").getBytes(StandardCharsets.UTF_8));
+        Path json = folder.newFile().toPath();
+        Files.write(json, ("  [{\"id\": 204, \"location\": {\"latitude\": 50.062006, \"longitude\": 19.940984}},"
+                + " {\"id\": 5, \"location\": null},"
+                + " {\"id\": 820, \"address\": {}, \"location\": {\"latitude\": 50.0577, \"longitude\": 19.9262}}]")
+                .getBytes(StandardCharsets.UTF_8));
+
+        for (Path path : new Path[]{text, json}) {
+            SensorIndex index = SensorIndex.readList(path);
+            assertEquals(2, index.size());
+            assertArrayEquals(new double[]{50.0577, 19.9262}, index.locate(820), 0);
+            assertArrayEquals(new int[]{204, 820}, index.nearest(50.062, 19.941, 2));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidLists() throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, "204,50.062006\n".getBytes(StandardCharsets.UTF_8));
+
+        SensorIndex.readList(path);
+    }
+
+    /**
+     * Returns a location in Poland most of the time, where sensors are dense, or anywhere on Earth.
+     */
+    private static double[] randomLocation(Random random) {
+        if (random.nextInt(4) == 0) {
+            return new double[]{Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                    -180 + 360 * random.nextDouble()};
+        }
+        return new double[]{49 + 6 * random.nextDouble(), 14 + 10 * random.nextDouble()};
+    }
+
+    private static class Sensors {
+        final int[] ids;
+        final double[] latitudes;
+        final double[] longitudes;
+
+        Sensors(int size) {
+            ids = new int[size];
+            latitudes = new double[size];
+            longitudes = new double[size];
+        }
+
+        static Sensors random(Random random, int size) {
+            Sensors sensors = new Sensors(size);
+            for (int i = 0; i < size; i++) {
+                double[] location = randomLocation(random);
+                sensors.ids[i] = 1000 + i;
+                sensors.latitudes[i] = location[0];
+                sensors.longitudes[i] = location[1];
+            }
+            return sensors;
+        }
+
+        /**
+         * @return great-circle distance in meters by the haversine formula
+         */
+        double distance(int id, double latitude, double longitude) {
+            int i = id - 1000;
+            double phi1 = Math.toRadians(latitudes[i]);
+            double phi2 = Math.toRadians(latitude);
+            double dPhi = phi2 - phi1;
+            double dLambda = Math.toRadians(longitude - longitudes[i]);
+            double a = Math.pow(Math.sin(dPhi / 2), 2)
+                    + Math.cos(phi1) * Math.cos(phi2) * Math.pow(Math.sin(dLambda / 2), 2);
+            return 2 * SensorIndex.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+
+        /**
+         * @return ids of all the sensors, nearest to the location first
+         */
+        int[] byDistance(double latitude, double longitude) {
+            return IntStream.of(ids).boxed()
+                    .sorted(Comparator.comparingDouble(id -> distance(id, latitude, longitude)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package agh.cs.oop.airlyconsoleclient.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        // Decimal comma
+        Locale.setDefault(new Locale("pl", "PL"));
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void formatsDurationsWithADecimalPoint() {
+        assertEquals("850 ns", LatencyHistogram.format(850));
+        assertEquals("12.5 µs", LatencyHistogram.format(12_500));
+        assertEquals("12.3 ms", LatencyHistogram.format(12_300_000));
+        assertEquals("1.50 s", LatencyHistogram.format(1_500_000_000));
+    }
+}
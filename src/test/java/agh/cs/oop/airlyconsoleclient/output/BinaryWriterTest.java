@@ -0,0 +1,61 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BinaryWriterTest {
+
+    private static final int RECORD_LENGTH = 97;
+
+    @Test
+    public void writesLengthPrefixedRecords() throws IOException {
+        MeasurementColumns history = new MeasurementColumns(1);
+        history.add(-3_600_000, 0, 1, 2, 3, 4, 5, 6, 7, 1);
+        AllMeasurements measurements = new AllMeasurements(new Measurement(8, 9, 10, 11, 12, 13, 14, 2), history);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryWriter writer = new BinaryWriter(Channels.newChannel(output))) {
+            writer.write(new Target(1234), measurements, true);
+            writer.write(new Target(50.0614, -19.9366), measurements, false);
+        }
+        ByteBuffer records = ByteBuffer.wrap(output.toByteArray());
+
+        assertEquals(3 * (Integer.BYTES + RECORD_LENGTH), records.remaining());
+
+        assertRecord(records, 0, 1234, Double.NaN, Double.NaN, Long.MIN_VALUE, Long.MIN_VALUE, 8, 2);
+        assertRecord(records, 1, 1234, Double.NaN, Double.NaN, -3_600_000, 0, 1, 1);
+        assertRecord(records, 0, -1, 50.0614, -19.9366, Long.MIN_VALUE, Long.MIN_VALUE, 8, 2);
+        assertFalse(records.hasRemaining());
+    }
+
+    /**
+     * Reads a record and checks its fields, with the measured values following the first one.
+     */
+    private static void assertRecord(ByteBuffer records, int kind, int sensorId, double latitude, double longitude,
+                                     long from, long till, double firstValue, int pollutionLevel) {
+        assertEquals(RECORD_LENGTH, records.getInt());
+        int end = records.position() + RECORD_LENGTH;
+        assertEquals(kind, records.get());
+        assertEquals(sensorId, records.getInt());
+        assertEquals(latitude, records.getDouble(), 0);
+        assertEquals(longitude, records.getDouble(), 0);
+        assertEquals(from, records.getLong());
+        assertEquals(till, records.getLong());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(firstValue + i, records.getDouble(), 0);
+        }
+        assertEquals(pollutionLevel, records.getInt());
+        assertEquals(end, records.position());
+    }
+}
@@ -0,0 +1,135 @@
+package agh.cs.oop.airlyconsoleclient.output;
+
+import agh.cs.oop.airlyconsoleclient.Target;
+import agh.cs.oop.airlyconsoleclient.airlyapi.AllMeasurements;
+import agh.cs.oop.airlyconsoleclient.airlyapi.Measurement;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementWithTime;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CsvWriterTest {
+
+    private static final int COLUMNS = 14;
+    private static final int FROM_COLUMN = 4;
+    private static final int AIR_QUALITY_INDEX_COLUMN = 6;
+
+    @Test
+    public void writesRowsOfAllColumns() throws IOException {
+        MeasurementColumns history = new MeasurementColumns(1);
+        history.add(0, 3_600_000, 1, 2, 3, 4, 5, 6, 7, 1);
+        AllMeasurements measurements = new AllMeasurements(new Measurement(1, 2, 3, 4, 5, 6, 7, 1), history);
+
+        String[] lines = write(new Target(1234), measurements, new Target(50.0614, -19.9366), measurements);
+
+        assertEquals(5, lines.length);
+        assertEquals(COLUMNS, lines[0].split(",").length);
+        assertEquals("current,1234,,,,,1,2,3,4,5,6,7,1", lines[1]);
+        assertEquals("history,1234,,,1970-01-01T00:00:00Z,1970-01-01T01:00:00Z,1,2,3,4,5,6,7,1", lines[2]);
+        assertEquals("current,,50.0614,-19.9366,,,1,2,3,4,5,6,7,1", lines[3]);
+        assertEquals("history,,50.0614,-19.9366,1970-01-01T00:00:00Z,1970-01-01T01:00:00Z,1,2,3,4,5,6,7,1",
+                lines[4]);
+    }
+
+    @Test
+    public void leavesMissingValuesEmpty() throws IOException {
+        MeasurementColumns history = new MeasurementColumns(1);
+        history.add(MeasurementWithTime.NO_TIME, MeasurementWithTime.NO_TIME, Double.NaN, Double.NaN, Double.NaN,
+                Double.NaN, Double.NaN, Double.NaN, Double.NaN, -1);
+        // The current measurement without data is skipped
+        AllMeasurements measurements = new AllMeasurements(
+                new Measurement(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, -1),
+                history);
+
+        String[] lines = write(new Target(1), measurements);
+
+        assertEquals(2, lines.length);
+        assertEquals("history,1,,,,,,,,,,,,", lines[1]);
+        assertEquals(COLUMNS, lines[1].split(",", -1).length);
+    }
+
+    @Test
+    public void roundsValuesToThreeDecimalPlaces() throws IOException {
+        assertEquals("1", writeValue(0.9996));
+        assertEquals("-1", writeValue(-0.9996));
+        assertEquals("0", writeValue(-0.0004));
+        assertEquals("0", writeValue(0.0004));
+        assertEquals("0", writeValue(-0.0));
+        assertEquals("0.001", writeValue(0.0006));
+        assertEquals("0.05", writeValue(0.05));
+        assertEquals("-3.142", writeValue(-3.14159));
+        assertEquals("100", writeValue(100));
+        assertEquals("1000000000000", writeValue(999_999_999_999.9999));
+    }
+
+    @Test
+    public void writesLargeValuesExactly() throws IOException {
+        for (double value : new double[]{1e12, -1e12, 123_456_789_012_345.67, -1.5e15, Double.MAX_VALUE}) {
+            assertEquals(value, Double.parseDouble(writeValue(value)), 0);
+        }
+    }
+
+    @Test
+    public void writesTimesLikeInstant() throws IOException {
+        long[] times = {
+                -1, // 1969-12-31T23:59:59.999Z
+                -86_400_000,
+                Instant.parse("1968-02-29T12:34:56.789Z").toEpochMilli(),
+                Instant.parse("2000-02-29T00:00:00Z").toEpochMilli(),
+                Instant.parse("2016-02-29T23:59:59.001Z").toEpochMilli(),
+                Instant.parse("1900-03-01T00:00:00Z").toEpochMilli(),
+                Instant.parse("0001-01-01T00:00:00Z").toEpochMilli(),
+                Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli(),
+        };
+        for (long time : times) {
+            assertEquals(Instant.ofEpochMilli(time).toString(), writeTime(time));
+        }
+
+        Random random = new Random(1);
+        long min = Instant.parse("0001-01-01T00:00:00Z").toEpochMilli();
+        long max = Instant.parse("9999-12-31T23:59:59.999Z").toEpochMilli();
+        for (int i = 0; i < 10_000; i++) {
+            long time = min + (long) (random.nextDouble() * (max - min));
+            if (i % 2 == 0) {
+                // Whole seconds, written without the fraction
+                time -= Math.floorMod(time, 1000);
+            }
+            assertEquals(Instant.ofEpochMilli(time).toString(), writeTime(time));
+        }
+    }
+
+    private static String writeValue(double value) throws IOException {
+        AllMeasurements measurements = new AllMeasurements(new Measurement(value, 0, 0, 0, 0, 0, 0, 0),
+                new MeasurementColumns(0));
+        return write(new Target(1), measurements)[1].split(",", -1)[AIR_QUALITY_INDEX_COLUMN];
+    }
+
+    private static String writeTime(long time) throws IOException {
+        MeasurementColumns history = new MeasurementColumns(1);
+        history.add(time, time, 0, 0, 0, 0, 0, 0, 0, 0);
+        return write(new Target(1), new AllMeasurements(null, history))[1].split(",", -1)[FROM_COLUMN];
+    }
+
+    /**
+     * @param targetsAndMeasurements pairs of a target and its measurements
+     * @return the written lines, starting with the header
+     */
+    private static String[] write(Object... targetsAndMeasurements) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (CsvWriter writer = new CsvWriter(Channels.newChannel(output))) {
+            for (int i = 0; i < targetsAndMeasurements.length; i += 2) {
+                writer.write((Target) targetsAndMeasurements[i], (AllMeasurements) targetsAndMeasurements[i + 1],
+                        true);
+            }
+        }
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+    }
+}
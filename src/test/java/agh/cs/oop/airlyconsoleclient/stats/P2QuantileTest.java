@@ -0,0 +1,145 @@
+package agh.cs.oop.airlyconsoleclient.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class P2QuantileTest {
+
+    private static final double[] QUANTILES = {0.05, 0.25, 0.5, 0.9, 0.95, 0.99};
+
+    /** Maximum difference between the fraction of values not greater than the estimate and the quantile */
+    private static final double RANK_TOLERANCE = 0.01;
+    /** Markers adjusted by one position per value lag behind a series drifting away from them */
+    private static final double DRIFT_RANK_TOLERANCE = 0.05;
+
+    @Test
+    public void isNaNWithoutValues() {
+        assertTrue(Double.isNaN(new P2Quantile(0.5).get()));
+    }
+
+    @Test
+    public void isExactForFewValues() {
+        double[] values = {7, -3, 12, 0};
+        for (double p : QUANTILES) {
+            P2Quantile quantile = new P2Quantile(p);
+            for (int count = 1; count <= values.length; count++) {
+                quantile.add(values[count - 1]);
+                assertEquals("p = " + p + " of " + count + " values",
+                        exact(Arrays.copyOf(values, count), p), quantile.get(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void estimatesQuantilesOfDistributions() {
+        Random random = new Random(1);
+        assertEstimates("uniform", random::nextDouble, RANK_TOLERANCE);
+        assertEstimates("normal", random::nextGaussian, RANK_TOLERANCE);
+        assertEstimates("exponential", () -> -Math.log(1 - random.nextDouble()), RANK_TOLERANCE);
+        assertEstimates("log-normal", () -> Math.exp(2 * random.nextGaussian()), RANK_TOLERANCE);
+        assertEstimates("discrete", () -> random.nextInt(100), RANK_TOLERANCE);
+    }
+
+    @Test
+    public void estimatesQuantilesOfOrderedValues() {
+        int[] next = {0};
+        assertEstimates("ascending", () -> next[0]++, RANK_TOLERANCE);
+        assertEstimates("descending", () -> next[0]--, RANK_TOLERANCE);
+        // Like hourly PM2.5 concentrations, correlated with the previous ones
+        Random random = new Random(2);
+        double[] walk = {20};
+        assertEstimates("random walk", () -> walk[0] = Math.max(0, walk[0] + random.nextGaussian()),
+                DRIFT_RANK_TOLERANCE);
+    }
+
+    @Test
+    public void isExactForConstantValues() {
+        for (double p : QUANTILES) {
+            P2Quantile quantile = new P2Quantile(p);
+            for (int i = 0; i < 1000; i++) {
+                quantile.add(42.5);
+            }
+            assertEquals(42.5, quantile.get(), 0);
+        }
+    }
+
+    @Test
+    public void staysWithinTheRangeOfValues() {
+        Random random = new Random(3);
+        for (double p : QUANTILES) {
+            P2Quantile quantile = new P2Quantile(p);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < 1000; i++) {
+                // Mostly equal values with rare outliers
+                double value = random.nextInt(50) == 0 ? random.nextGaussian() * 1e6 : 1;
+                quantile.add(value);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                assertTrue(quantile.get() >= min && quantile.get() <= max);
+            }
+        }
+    }
+
+    private static void assertEstimates(String distribution, DoubleSupplier values, double tolerance) {
+        int count = 20_000;
+        double[] sample = new double[count];
+        for (int i = 0; i < count; i++) {
+            sample[i] = values.getAsDouble();
+        }
+
+        for (double p : QUANTILES) {
+            P2Quantile quantile = new P2Quantile(p);
+            for (double value : sample) {
+                quantile.add(value);
+            }
+            double estimate = quantile.get();
+
+            // Compared by ranks, as values of skewed distributions differ a lot between close ranks
+            double[] sorted = sample.clone();
+            Arrays.sort(sorted);
+            double below = lowerRank(sorted, estimate) / (double) count;
+            double notAbove = upperRank(sorted, estimate) / (double) count;
+            String message = distribution + ", p = " + p + ": estimate " + estimate + " at ranks " + below + " to "
+                    + notAbove + ", exact " + exact(sample, p);
+            assertTrue(message, below - tolerance <= p && p <= notAbove + tolerance);
+        }
+    }
+
+    /**
+     * @return the quantile by the nearest-rank method
+     */
+    private static double exact(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * @return number of the sorted values less than the value
+     */
+    private static int lowerRank(double[] sorted, double value) {
+        int rank = 0;
+        while (rank < sorted.length && sorted[rank] < value) {
+            rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * @return number of the sorted values not greater than the value
+     */
+    private static int upperRank(double[] sorted, double value) {
+        int rank = lowerRank(sorted, value);
+        while (rank < sorted.length && sorted[rank] == value) {
+            rank++;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,99 @@
+package agh.cs.oop.airlyconsoleclient.stats;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RunningStatisticsTest {
+
+    @Test
+    public void hasNoStatisticsWithoutValues() {
+        RunningStatistics statistics = new RunningStatistics(24);
+        statistics.add(Double.NaN);
+
+        assertEquals(0, statistics.getCount());
+        assertTrue(Double.isNaN(statistics.getMin()));
+        assertTrue(Double.isNaN(statistics.getMax()));
+        assertTrue(Double.isNaN(statistics.getMean()));
+        assertTrue(Double.isNaN(statistics.getStandardDeviation()));
+        assertTrue(Double.isNaN(statistics.getMovingAverage()));
+        for (double percentile : RunningStatistics.PERCENTILES) {
+            assertTrue(Double.isNaN(statistics.getPercentile(percentile)));
+        }
+    }
+
+    @Test
+    public void computesStatisticsLikeTwoPasses() {
+        Random random = new Random(1);
+        int window = 24;
+        RunningStatistics statistics = new RunningStatistics(window);
+        double[] values = new double[5000];
+        for (int i = 0; i < values.length; i++) {
+            // Large offset, which loses precision in the naive sum of squares
+            values[i] = 1e9 + random.nextGaussian() * 10;
+            statistics.add(values[i]);
+            if (i % 7 == 0) {
+                statistics.add(Double.NaN);
+            }
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+        double mean = sum / values.length;
+        double squaredDeviations = 0;
+        for (double value : values) {
+            squaredDeviations += (value - mean) * (value - mean);
+        }
+        double latestSum = 0;
+        for (int i = values.length - window; i < values.length; i++) {
+            latestSum += values[i];
+        }
+
+        assertEquals(values.length, statistics.getCount());
+        assertEquals(min, statistics.getMin(), 0);
+        assertEquals(max, statistics.getMax(), 0);
+        assertEquals(mean, statistics.getMean(), mean * 1e-14);
+        assertEquals(Math.sqrt(squaredDeviations / (values.length - 1)), statistics.getStandardDeviation(), 1e-6);
+        assertEquals(latestSum / window, statistics.getMovingAverage(), 1e-6);
+        assertEquals(window, statistics.getMovingAverageWindow());
+    }
+
+    @Test
+    public void averagesAllValuesUntilTheWindowIsFull() {
+        RunningStatistics statistics = new RunningStatistics(3);
+        statistics.add(1);
+        assertEquals(1, statistics.getMovingAverage(), 0);
+        statistics.add(2);
+        assertEquals(1.5, statistics.getMovingAverage(), 0);
+        statistics.add(6);
+        assertEquals(3, statistics.getMovingAverage(), 0);
+        statistics.add(10);
+        assertEquals(6, statistics.getMovingAverage(), 0);
+    }
+
+    @Test
+    public void estimatesPercentiles() {
+        RunningStatistics statistics = new RunningStatistics(24);
+        for (int i = 1; i <= 1000; i++) {
+            statistics.add(i);
+        }
+
+        for (double percentile : RunningStatistics.PERCENTILES) {
+            assertEquals(percentile * 10, statistics.getPercentile(percentile), 10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentilesWhichAreNotEstimated() {
+        new RunningStatistics(24).getPercentile(75);
+    }
+}
@@ -0,0 +1,148 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static agh.cs.oop.airlyconsoleclient.store.Histories.HOUR;
+import static agh.cs.oop.airlyconsoleclient.store.Histories.START;
+import static agh.cs.oop.airlyconsoleclient.store.Histories.assertColumnsEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveChunkTest {
+
+    @Test
+    public void decodesEncodedRows() throws IOException {
+        Random random = new Random(1);
+        for (int size : new int[]{1, 2, 3, 100, ArchiveChunk.MAX_ROWS}) {
+            MeasurementColumns columns = Histories.random(random, size);
+
+            assertColumnsEqual(columns, roundTrip(columns, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void decodesSpecialValues() throws IOException {
+        double[] values = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 1.0, 1.0, 1.0000000000000002, -1e-300};
+        // Deltas of deltas of every width
+        long[] fromTimes = {Long.MIN_VALUE + 1, -1, 0, 1, 3, 66, 130, 400, 2500, 4600, 1L << 40, Long.MAX_VALUE - 1};
+        long[] tillTimes = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 5, 5, 5, 6, 70_000, 0, 1L << 62, Long.MIN_VALUE};
+        int[] levels = {Integer.MIN_VALUE, -1, -1, 0, 5, Integer.MAX_VALUE, 0, 0, 1, 1, -1, 3};
+
+        int size = values.length;
+        MeasurementColumns columns = new MeasurementColumns(size);
+        for (int i = 0; i < size; i++) {
+            double value = values[i];
+            double other = values[size - 1 - i];
+            columns.add(fromTimes[i], tillTimes[i], value, other, value, other, value, other, value, levels[i]);
+        }
+
+        assertColumnsEqual(columns, roundTrip(columns, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void compressesRegularHistory() {
+        int size = ArchiveChunk.MAX_ROWS;
+        MeasurementColumns columns = new MeasurementColumns(size);
+        for (int i = 0; i < size; i++) {
+            columns.add(START + i * HOUR, START + (i + 1) * HOUR, 30, 10, 20, 25, 101_325, 50, 5, 1);
+        }
+
+        // Unchanged values and regular times take a bit per row and column
+        int raw = size * (2 * Long.BYTES + 7 * Double.BYTES + Integer.BYTES);
+        int encoded = encode(columns).length;
+        assertTrue(encoded + " bytes", encoded < raw / 50);
+    }
+
+    @Test
+    public void encodesSelectedRows() throws IOException {
+        MeasurementColumns columns = Histories.random(new Random(2), 50);
+        int[] order = {3, 5, 8, 13, 21, 34};
+
+        MeasurementColumns decoded = new MeasurementColumns(0);
+        new ArchiveChunk().decode(ArchiveChunk.encode(columns, order, 2, 3), Long.MIN_VALUE, Long.MAX_VALUE,
+                decoded);
+
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < 3; i++) {
+            int row = order[2 + i];
+            assertEquals(columns.getFromTimes()[row], decoded.getFromTimes()[i]);
+            assertEquals(columns.getTillTimes()[row], decoded.getTillTimes()[i]);
+            assertEquals(columns.getPm25()[row], decoded.getPm25()[i], 0);
+            assertEquals(columns.getPollutionLevel()[row], decoded.getPollutionLevel()[i]);
+        }
+    }
+
+    @Test
+    public void decodesRangesLikeAFilter() throws IOException {
+        Random random = new Random(3);
+        MeasurementColumns columns = Histories.random(random, 500);
+        long first = columns.getFromTimes()[0];
+        long last = columns.getFromTimes()[columns.size() - 1];
+        ArchiveChunk decoder = new ArchiveChunk();
+        byte[] chunk = encode(columns);
+
+        for (int i = 0; i < 200; i++) {
+            long fromTime = first - HOUR + (long) (random.nextDouble() * (last - first + 2 * HOUR));
+            long tillTime = fromTime + (long) (random.nextDouble() * (last - first) / 4);
+            if (i % 10 == 0) {
+                // At the exact beginning of a measurement
+                fromTime = columns.getFromTimes()[random.nextInt(columns.size())];
+            }
+
+            MeasurementColumns decoded = new MeasurementColumns(0);
+            int count = decoder.decode(chunk, fromTime, tillTime, decoded);
+
+            MeasurementColumns expected = Histories.range(columns, fromTime, tillTime);
+            assertEquals(expected.size(), count);
+            assertColumnsEqual(expected, decoded.trim());
+        }
+    }
+
+    @Test
+    public void addsToColumnsAfterTheirRows() throws IOException {
+        MeasurementColumns columns = Histories.random(new Random(4), 10);
+        byte[] chunk = encode(columns);
+        ArchiveChunk decoder = new ArchiveChunk();
+
+        MeasurementColumns decoded = new MeasurementColumns(0);
+        decoder.decode(chunk, Long.MIN_VALUE, columns.getFromTimes()[5], decoded);
+        decoder.decode(chunk, columns.getFromTimes()[5], Long.MAX_VALUE, decoded);
+
+        assertColumnsEqual(columns, decoded.trim());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedChunk() throws IOException {
+        byte[] chunk = encode(Histories.random(new Random(5), 100));
+        new ArchiveChunk().decode(Arrays.copyOf(chunk, chunk.length / 2), Long.MIN_VALUE, Long.MAX_VALUE,
+                new MeasurementColumns(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidRowCount() throws IOException {
+        byte[] chunk = encode(Histories.random(new Random(6), 100));
+        chunk[0] = 0x7f;
+        new ArchiveChunk().decode(chunk, Long.MIN_VALUE, Long.MAX_VALUE, new MeasurementColumns(0));
+    }
+
+    private static byte[] encode(MeasurementColumns columns) {
+        int[] order = new int[columns.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        return ArchiveChunk.encode(columns, order, 0, order.length);
+    }
+
+    private static MeasurementColumns roundTrip(MeasurementColumns columns, long fromTime, long tillTime)
+            throws IOException {
+        MeasurementColumns decoded = new MeasurementColumns(0);
+        new ArchiveChunk().decode(encode(columns), fromTime, tillTime, decoded);
+        return decoded.trim();
+    }
+}
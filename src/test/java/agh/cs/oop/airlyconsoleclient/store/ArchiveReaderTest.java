@@ -0,0 +1,128 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static agh.cs.oop.airlyconsoleclient.store.Histories.HOUR;
+import static agh.cs.oop.airlyconsoleclient.store.Histories.assertColumnsEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ArchiveReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWrittenSeries() throws IOException {
+        Random random = new Random(1);
+        Map<String, MeasurementColumns> series = new LinkedHashMap<>();
+        series.put("sensor-1", Histories.random(random, 3000));
+        series.put("point-50.06,19.94", Histories.random(random, ArchiveChunk.MAX_ROWS));
+        series.put("sensor-2", Histories.random(random, 1));
+        Path path = folder.getRoot().toPath().resolve("history.aira");
+
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            for (Map.Entry<String, MeasurementColumns> entry : series.entrySet()) {
+                assertEquals(entry.getValue().size(), writer.write(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        try (ArchiveReader reader = ArchiveReader.open(path)) {
+            assertEquals(series.keySet(), reader.keys());
+            for (Map.Entry<String, MeasurementColumns> entry : series.entrySet()) {
+                assertColumnsEqual(entry.getValue(), reader.read(entry.getKey(), Long.MIN_VALUE, Long.MAX_VALUE));
+            }
+            assertEquals(0, reader.read("sensor-3", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertFalse("temporary files are removed", files.anyMatch(file -> !file.equals(path)));
+        }
+    }
+
+    @Test
+    public void readsRangesLikeAFilter() throws IOException {
+        Random random = new Random(2);
+        MeasurementColumns columns = Histories.random(random, 5000);
+        Path path = folder.getRoot().toPath().resolve("history.aira");
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            writer.write("sensor", columns);
+        }
+
+        long first = columns.getFromTimes()[0];
+        long last = columns.getFromTimes()[columns.size() - 1];
+        try (ArchiveReader reader = ArchiveReader.open(path)) {
+            for (int i = 0; i < 300; i++) {
+                long fromTime = first - HOUR + (long) (random.nextDouble() * (last - first + 2 * HOUR));
+                // Spanning from a few hours to several chunks
+                long tillTime = fromTime + (long) (Math.pow(random.nextDouble(), 3) * (last - first));
+                if (i % 10 == 0) {
+                    // At the boundaries of chunks
+                    int boundary = ArchiveChunk.MAX_ROWS * (1 + random.nextInt(4));
+                    fromTime = columns.getFromTimes()[boundary - random.nextInt(2)];
+                }
+
+                assertColumnsEqual(Histories.range(columns, fromTime, tillTime),
+                        reader.read("sensor", fromTime, tillTime));
+            }
+        }
+    }
+
+    @Test
+    public void writesOnlyNewerMeasurementsOfASeries() throws IOException {
+        MeasurementColumns columns = Histories.random(new Random(3), 100);
+        long[] from = columns.getFromTimes();
+        Path path = folder.getRoot().toPath().resolve("history.aira");
+
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            assertEquals(60, writer.write("sensor", Histories.range(columns, Long.MIN_VALUE, from[60])));
+            // Overlapping with the written ones, and out of order
+            assertEquals(40, writer.write("sensor", Histories.range(columns, from[30], Long.MAX_VALUE)));
+            assertEquals(0, writer.write("sensor", Histories.range(columns, from[10], from[20])));
+            assertEquals(100, writer.write("other", columns));
+        }
+
+        try (ArchiveReader reader = ArchiveReader.open(path)) {
+            assertColumnsEqual(columns, reader.read("sensor", Long.MIN_VALUE, Long.MAX_VALUE));
+            assertColumnsEqual(columns, reader.read("other", Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("history.aira");
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            writer.write("sensor", Histories.random(new Random(4), 100));
+        }
+        byte[] archive = Files.readAllBytes(path);
+
+        assertRejected(new byte[0]);
+        assertRejected(new byte[100]);
+        assertRejected(Arrays.copyOf(archive, archive.length - 1));
+        byte[] badVersion = archive.clone();
+        badVersion[7]++;
+        assertRejected(badVersion);
+    }
+
+    private void assertRejected(byte[] contents) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, contents);
+        try {
+            ArchiveReader.open(path).close();
+            fail("Opened an invalid archive of " + contents.length + " bytes");
+        } catch (IOException expected) {
+        }
+    }
+}
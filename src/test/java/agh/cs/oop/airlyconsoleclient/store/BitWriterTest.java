@@ -0,0 +1,72 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitWriterTest {
+
+    @Test
+    public void writesMostSignificantBitsFirst() {
+        BitWriter writer = new BitWriter(0);
+        writer.writeBit(true);
+        writer.write(0b010, 3);
+        writer.write(0xABC, 12);
+        writer.writeBit(true);
+
+        // 1010 1010 1011 1100 1 padded with zeros
+        assertArrayEquals(new byte[]{(byte) 0xAA, (byte) 0xBC, (byte) 0x80}, writer.toByteArray());
+    }
+
+    @Test
+    public void writesOnlyTheLowestBits() {
+        BitWriter writer = new BitWriter(0);
+        writer.write(-1L, 4);
+        writer.write(0, 4);
+
+        assertArrayEquals(new byte[]{(byte) 0xF0}, writer.toByteArray());
+    }
+
+    @Test
+    public void readsBackRandomValuesOfAllWidths() {
+        Random random = new Random(1);
+        int count = 10_000;
+        long[] values = new long[count];
+        int[] widths = new int[count];
+
+        BitWriter writer = new BitWriter(16);
+        for (int i = 0; i < count; i++) {
+            widths[i] = 1 + random.nextInt(Long.SIZE);
+            values[i] = random.nextLong() & BitWriter.mask(widths[i]);
+            writer.write(values[i], widths[i]);
+        }
+        byte[] bytes = writer.toByteArray();
+
+        BitReader reader = new BitReader(bytes, 0, bytes.length);
+        for (int i = 0; i < count; i++) {
+            assertEquals("value " + i + " of " + widths[i] + " bits", values[i], reader.read(widths[i]));
+        }
+    }
+
+    @Test
+    public void readsBitsFromARangeOfBytes() {
+        byte[] bytes = {(byte) 0xFF, (byte) 0b1000_0001, (byte) 0xFF};
+        BitReader reader = new BitReader(bytes, 1, 1);
+
+        assertTrue(reader.readBit());
+        assertEquals(0, reader.read(6));
+        assertTrue(reader.readBit());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsAtTheEndOfBits() {
+        BitReader reader = new BitReader(new byte[]{0}, 0, 1);
+        assertFalse(reader.readBit());
+        reader.read(8);
+    }
+}
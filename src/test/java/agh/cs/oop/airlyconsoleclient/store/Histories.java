@@ -0,0 +1,95 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measurement histories for tests of the stores.
+ */
+class Histories {
+
+    static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    static final long START = 1_514_764_800_000L; // 2018-01-01T00:00:00Z
+
+    private Histories() {
+    }
+
+    /**
+     * Creates an hourly history with gaps, irregular times, repeated and missing values (NaN and -1 levels),
+     * ordered by the beginning time.
+     */
+    static MeasurementColumns random(Random random, int size) {
+        MeasurementColumns columns = new MeasurementColumns(size);
+        long from = START;
+        double pm25 = 20;
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                from += HOUR * (2 + random.nextInt(100)); // a gap
+            } else if (kind == 1) {
+                from += 1 + random.nextInt(Integer.MAX_VALUE); // an irregular time
+            } else {
+                from += HOUR;
+            }
+            if (random.nextInt(4) != 0) {
+                pm25 = Math.max(0, pm25 + random.nextGaussian() * 5);
+            }
+            boolean missing = random.nextInt(10) == 0;
+            columns.add(from, from + HOUR,
+                    missing ? 0.0 : pm25 * 1.5,
+                    missing ? Double.NaN : Math.round(pm25 * 0.7),
+                    pm25,
+                    random.nextInt(8) == 0 ? pm25 : pm25 * 1.3 + random.nextDouble(),
+                    100_000 + random.nextInt(4000) * 0.25,
+                    random.nextInt(100),
+                    -20 + random.nextDouble() * 50,
+                    missing ? -1 : (int) Math.min(5, pm25 / 20));
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the rows of the columns which began in the range [fromTime, tillTime).
+     */
+    static MeasurementColumns range(MeasurementColumns columns, long fromTime, long tillTime) {
+        MeasurementColumns range = new MeasurementColumns(0);
+        for (int i = 0; i < columns.size(); i++) {
+            long from = columns.getFromTimes()[i];
+            if (from >= fromTime && from < tillTime) {
+                range.add(from, columns.getTillTimes()[i], columns.getAirQualityIndex()[i], columns.getPm1()[i],
+                        columns.getPm25()[i], columns.getPm10()[i], columns.getPressure()[i],
+                        columns.getHumidity()[i], columns.getTemperature()[i], columns.getPollutionLevel()[i]);
+            }
+        }
+        return range.trim();
+    }
+
+    /**
+     * Asserts that the columns are equal, comparing doubles bit by bit.
+     */
+    static void assertColumnsEqual(MeasurementColumns expected, MeasurementColumns actual) {
+        assertEquals("size", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            String row = "row " + i;
+            assertEquals(row, expected.getFromTimes()[i], actual.getFromTimes()[i]);
+            assertEquals(row, expected.getTillTimes()[i], actual.getTillTimes()[i]);
+            assertBitsEqual(row, expected.getAirQualityIndex()[i], actual.getAirQualityIndex()[i]);
+            assertBitsEqual(row, expected.getPm1()[i], actual.getPm1()[i]);
+            assertBitsEqual(row, expected.getPm25()[i], actual.getPm25()[i]);
+            assertBitsEqual(row, expected.getPm10()[i], actual.getPm10()[i]);
+            assertBitsEqual(row, expected.getPressure()[i], actual.getPressure()[i]);
+            assertBitsEqual(row, expected.getHumidity()[i], actual.getHumidity()[i]);
+            assertBitsEqual(row, expected.getTemperature()[i], actual.getTemperature()[i]);
+            assertEquals(row, expected.getPollutionLevel()[i], actual.getPollutionLevel()[i]);
+        }
+    }
+
+    private static void assertBitsEqual(String message, double expected, double actual) {
+        assertEquals(message + ": expected " + expected + " but was " + actual,
+                Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+}
@@ -0,0 +1,110 @@
+package agh.cs.oop.airlyconsoleclient.store;
+
+import agh.cs.oop.airlyconsoleclient.airlyapi.MeasurementColumns;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static agh.cs.oop.airlyconsoleclient.store.Histories.HOUR;
+import static agh.cs.oop.airlyconsoleclient.store.Histories.assertColumnsEqual;
+import static org.junit.Assert.assertEquals;
+
+public class HistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private HistoryStore store;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath().resolve("history");
+        store = new HistoryStore(directory);
+    }
+
+    @Test
+    public void readsNothingOfUnknownSeries() throws IOException {
+        assertEquals(0, store.read("sensor-1", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void readsAppendedMeasurementsAcrossBlocks() throws IOException {
+        // Appended in 24-hour batches like fetched histories, overlapping by an hour
+        MeasurementColumns columns = Histories.random(new Random(1), 2500);
+        long[] from = columns.getFromTimes();
+        int appended = 0;
+        for (int start = 0; start < columns.size(); start += 23) {
+            int end = Math.min(start + 24, columns.size());
+            appended += store.append("sensor-1", Histories.range(columns, from[start],
+                    end == columns.size() ? Long.MAX_VALUE : from[end]));
+        }
+
+        assertEquals(columns.size(), appended);
+        assertColumnsEqual(columns, store.read("sensor-1", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void readsRangesLikeAFilter() throws IOException {
+        Random random = new Random(2);
+        MeasurementColumns columns = Histories.random(random, 3000);
+        store.append("sensor-1", columns);
+
+        long first = columns.getFromTimes()[0];
+        long last = columns.getFromTimes()[columns.size() - 1];
+        for (int i = 0; i < 300; i++) {
+            long fromTime = first - HOUR + (long) (random.nextDouble() * (last - first + 2 * HOUR));
+            long tillTime = fromTime + (long) (Math.pow(random.nextDouble(), 3) * (last - first));
+            if (i % 10 == 0) {
+                fromTime = columns.getFromTimes()[random.nextInt(columns.size())];
+            }
+
+            assertColumnsEqual(Histories.range(columns, fromTime, tillTime),
+                    store.read("sensor-1", fromTime, tillTime));
+        }
+        assertEquals(0, store.read("sensor-1", last + 1, first).size());
+    }
+
+    @Test
+    public void appendsOnlyNewerMeasurements() throws IOException {
+        MeasurementColumns columns = Histories.random(new Random(3), 100);
+        long[] from = columns.getFromTimes();
+
+        assertEquals(60, store.append("sensor-1", Histories.range(columns, Long.MIN_VALUE, from[60])));
+        assertEquals(0, store.append("sensor-1", Histories.range(columns, from[10], from[20])));
+        assertEquals(40, store.append("sensor-1", Histories.range(columns, from[30], Long.MAX_VALUE)));
+        assertEquals(0, store.append("sensor-1", columns));
+
+        assertColumnsEqual(columns, store.read("sensor-1", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void keepsSeriesApart() throws IOException {
+        Random random = new Random(4);
+        MeasurementColumns sensor = Histories.random(random, 50);
+        MeasurementColumns point = Histories.random(random, 70);
+        store.append("sensor-1", sensor);
+        store.append("point-50.06,19.94", point);
+
+        assertColumnsEqual(sensor, store.read("sensor-1", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertColumnsEqual(point, store.read("point-50.06,19.94", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        store.append("sensor-1", Histories.random(new Random(5), 10));
+        try (Stream<Path> files = Files.list(directory)) {
+            Path file = files.findFirst().orElseThrow(AssertionError::new);
+            Files.write(file, new byte[4096]);
+        }
+
+        store.read("sensor-1", Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+}